@@ -0,0 +1,174 @@
+package com.htwsaar.benchmarks;
+
+import com.htwsaar.container.Group;
+import com.htwsaar.container.Message;
+import com.htwsaar.container.User;
+import com.htwsaar.logic.GroupLogic;
+import com.htwsaar.logic.MessageLogic;
+import com.htwsaar.logic.UserLogic;
+import com.htwsaar.sql.SQLConnection;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Databases and messages for the benchmarks. The messages are generated with a
+ * fixed seed, so every run and every fork works with the same data.
+ *
+ * @version 1.0
+ */
+final class BenchmarkData
+{
+    static final int ME = 1;
+    static final int USERS = 50;
+    static final int GROUPS = 10;
+
+    private static final String DB_LOCATION = "resources/";
+    private static final String[] DB_SUFFIXES = {"", "-wal", "-shm", "-journal"};
+    private static final long START = 1_530_000_000_000L;
+
+    private static final String[] WORDS = {
+            "hallo", "morgen", "treffen", "mensa", "vorlesung", "klausur", "projekt", "server",
+            "client", "datenbank", "heute", "abend", "bahn", "bibliothek", "code", "review",
+            "deadline", "kaffee", "gruppe", "termin", "java", "sqlite", "stomp", "nachricht"};
+
+    private BenchmarkData()
+    {
+    }
+
+    /**
+     * Opens a new empty database, an old one with the same name is deleted first.
+     *
+     * @param name name of the database file in resources/
+     */
+    static void open(String name) throws IOException
+    {
+        Files.createDirectories(Paths.get(DB_LOCATION));
+        delete(name);
+
+        if (!SQLConnection.INSTANCE.connect(name))
+        {
+            throw new IllegalStateException("Could not open database " + name);
+        }
+    }
+
+    /**
+     * Closes the connection and deletes the database.
+     */
+    static void close(String name) throws IOException
+    {
+        SQLConnection.INSTANCE.close();
+        delete(name);
+    }
+
+    private static void delete(String name) throws IOException
+    {
+        for (String suffix : DB_SUFFIXES)
+        {
+            Files.deleteIfExists(Paths.get(DB_LOCATION + name + suffix));
+        }
+    }
+
+    /**
+     * Stores the users 1 to {@link #USERS} and the groups 1 to {@link #GROUPS},
+     * so received messages do not ask the server for unknown senders.
+     */
+    static void storeRecipients()
+    {
+        List<User> users = new ArrayList<>();
+        for (int id = 1; id <= USERS; id++)
+        {
+            users.add(new User(id, "user" + id));
+        }
+
+        List<Group> groups = new ArrayList<>();
+        for (int id = 1; id <= GROUPS; id++)
+        {
+            groups.add(new Group(id, "group" + id, ME));
+        }
+
+        if (!UserLogic.INSTANCE.upsertUsers(users) || !GroupLogic.INSTANCE.upsertGroups(groups))
+        {
+            throw new IllegalStateException("Could not store the recipients");
+        }
+    }
+
+    /**
+     * Stores generated messages in batches.
+     *
+     * @param count number of messages
+     */
+    static void storeMessages(int count)
+    {
+        Random random = new Random(count);
+        List<Message> batch = new ArrayList<>(MessageLogic.PAGE_SIZE * 10);
+
+        for (int i = 0; i < count; i++)
+        {
+            batch.add(message(random, i + 1, START + i * 1000L));
+
+            if (batch.size() == MessageLogic.PAGE_SIZE * 10 || i == count - 1)
+            {
+                if (!MessageLogic.INSTANCE.insertMessages(batch))
+                {
+                    throw new IllegalStateException("Could not store the messages");
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * @param count    number of messages
+     * @param serverID server ID of the first message, 0 for messages without server ID
+     * @param seed     seed of the generator
+     * @return generated messages, every fifth one is a group message
+     */
+    static Message[] messages(int count, int serverID, long seed)
+    {
+        Random random = new Random(seed);
+        Message[] messages = new Message[count];
+
+        for (int i = 0; i < count; i++)
+        {
+            messages[i] = message(random, serverID == 0 ? 0 : serverID + i, START + i * 1000L);
+        }
+        return messages;
+    }
+
+    private static Message message(Random random, int serverID, long timestamp)
+    {
+        int origin = 1 + random.nextInt(USERS);
+
+        if (random.nextInt(5) == 0)
+        {
+            return new Message(serverID, origin, 1 + random.nextInt(GROUPS), text(random), timestamp, 1);
+        }
+
+        int destination = origin == ME ? 2 + random.nextInt(USERS - 1) : ME;
+        return new Message(serverID, origin, destination, text(random), timestamp, 0);
+    }
+
+    /**
+     * @return text of 3 to 14 words
+     */
+    static String text(Random random)
+    {
+        StringBuilder text = new StringBuilder();
+        int words = 3 + random.nextInt(12);
+
+        for (int i = 0; i < words; i++)
+        {
+            if (i > 0)
+            {
+                text.append(' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+}
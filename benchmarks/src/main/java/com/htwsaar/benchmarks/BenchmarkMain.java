@@ -0,0 +1,55 @@
+package com.htwsaar.benchmarks;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Runs the benchmarks with the JMH command line options and writes the results
+ * as JSON to {@value #RESULT_FILE}, so the results of two builds can be compared.
+ * {@code -rf} and {@code -rff} select another format or file, the listing and
+ * help options are passed on to the JMH main class.
+ * <p>
+ * The storage benchmarks create their databases in {@code resources/} of the
+ * working directory and delete them afterwards.
+ *
+ * @version 1.0
+ */
+public class BenchmarkMain
+{
+    public static final String RESULT_FILE = "target/jmh-result.json";
+
+    public static void main(String[] args) throws Exception
+    {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListWithParams()
+                || commandLine.shouldListProfilers() || commandLine.shouldListResultFormats())
+        {
+            Main.main(args);
+            return;
+        }
+
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+
+        if (!commandLine.getResultFormat().hasValue())
+        {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue())
+        {
+            Path result = Paths.get(RESULT_FILE);
+            Files.createDirectories(result.getParent());
+            options.result(result.toString());
+        }
+
+        new Runner(options.build()).run();
+    }
+}
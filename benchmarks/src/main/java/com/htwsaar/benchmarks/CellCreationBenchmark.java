@@ -0,0 +1,151 @@
+package com.htwsaar.benchmarks;
+
+import com.htwsaar.container.Message;
+import com.htwsaar.container.User;
+import com.htwsaar.controller.ChatItem;
+import com.htwsaar.controller.RecipientItem;
+import com.sun.javafx.application.PlatformImpl;
+import javafx.collections.FXCollections;
+import javafx.fxml.FXML;
+import javafx.fxml.FXMLLoader;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.layout.VBox;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates a list cell and shows its first item, as the chat and recipient lists
+ * do for every visible row after a scene switch. {@code chatItem} and
+ * {@code recipientItem} build the cell graph in code, {@code chatItemFxml}
+ * parses the markup of the former chatMessage.fxml on the first item of every
+ * cell as the cells did before, for comparison.
+ * <p>
+ * The cells are not shown, but the controls need a running JavaFX toolkit,
+ * so a display (or a headless glass platform like Monocle) is required.
+ *
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CellCreationBenchmark
+{
+    /**
+     * Markup of the removed chatMessage.fxml
+     */
+    private static final byte[] CHAT_MESSAGE_FXML = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<?import javafx.scene.control.Label?>\n" +
+            "<?import javafx.scene.layout.VBox?>\n" +
+            "<VBox xmlns=\"http://javafx.com/javafx\" xmlns:fx=\"http://javafx.com/fxml\" fx:id=\"message\">\n" +
+            "    <Label fx:id=\"messageText\">sss</Label>\n" +
+            "</VBox>\n").getBytes(StandardCharsets.UTF_8);
+
+    private ListView<Message> messages;
+    private ListView<Object> recipients;
+
+    @Setup
+    public void setUp() throws InterruptedException
+    {
+        CountDownLatch started = new CountDownLatch(1);
+        try
+        {
+            PlatformImpl.startup(started::countDown);
+        } catch (IllegalStateException e)
+        {
+            //already started by an earlier benchmark of the fork
+            started.countDown();
+        }
+        started.await();
+
+        User.ME = new User(BenchmarkData.ME, "user" + BenchmarkData.ME);
+        messages = new ListView<>(FXCollections.observableArrayList(BenchmarkData.messages(1, 1, 1)));
+        recipients = new ListView<>(FXCollections.observableArrayList((Object) new User(2, "user2")));
+    }
+
+    private static <T> ListCell<T> show(ListCell<T> cell, ListView<T> list)
+    {
+        cell.updateListView(list);
+        cell.updateIndex(0);
+        return cell;
+    }
+
+    @Benchmark
+    public ListCell<Message> chatItem()
+    {
+        return show(new ChatItem(), messages);
+    }
+
+    @Benchmark
+    public ListCell<Object> recipientItem()
+    {
+        return show(new RecipientItem(), recipients);
+    }
+
+    @Benchmark
+    public ListCell<Message> chatItemFxml()
+    {
+        return show(new FxmlChatItem(), messages);
+    }
+
+    /**
+     * Chat cell as it was before, parsing its graph on first use
+     */
+    public static class FxmlChatItem extends ListCell<Message>
+    {
+        @FXML
+        private Label messageText;
+
+        @FXML
+        private VBox message;
+
+        @Override
+        protected void updateItem(Message message, boolean empty)
+        {
+            super.updateItem(message, empty);
+
+            if (empty || message == null)
+            {
+                setGraphic(null);
+                return;
+            }
+
+            if (this.message == null)
+            {
+                FXMLLoader loader = new FXMLLoader();
+                loader.setController(this);
+                try
+                {
+                    loader.load(new ByteArrayInputStream(CHAT_MESSAGE_FXML));
+                } catch (IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            messageText.setText(message.getMessage());
+            this.message.setAlignment(message.getOrigin() == User.ME.getID() ? Pos.CENTER_RIGHT : Pos.CENTER_LEFT);
+            setGraphic(this.message);
+        }
+    }
+}
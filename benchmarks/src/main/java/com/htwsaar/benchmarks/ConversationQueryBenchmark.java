@@ -0,0 +1,93 @@
+package com.htwsaar.benchmarks;
+
+import com.htwsaar.container.Message;
+import com.htwsaar.logic.HistoryCursor;
+import com.htwsaar.logic.MessageLogic;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads conversations from a Messages table of {@code rows} messages, once the
+ * whole history and once the newest page as the chat view does. The whole
+ * history grows with the table, the page should stay nearly constant.
+ *
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConversationQueryBenchmark
+{
+    private static final String DATABASE = "benchmark-query";
+
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    private int user;
+    private int group;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        BenchmarkData.open(DATABASE);
+        BenchmarkData.storeMessages(rows);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        BenchmarkData.close(DATABASE);
+    }
+
+    private int nextUser()
+    {
+        user = user % (BenchmarkData.USERS - 1) + 2;
+        return user;
+    }
+
+    private int nextGroup()
+    {
+        group = group % BenchmarkData.GROUPS + 1;
+        return group;
+    }
+
+    @Benchmark
+    public List<Message> messagesFromUser()
+    {
+        return MessageLogic.INSTANCE.getMessagesFromUser(nextUser());
+    }
+
+    @Benchmark
+    public List<Message> messageFromGroup()
+    {
+        return MessageLogic.INSTANCE.getMessageFromGroup(nextGroup());
+    }
+
+    @Benchmark
+    public List<Message> messagesFromUserPage()
+    {
+        return MessageLogic.INSTANCE.getMessagesFromUser(nextUser(), HistoryCursor.LATEST, MessageLogic.PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<Message> messageFromGroupPage()
+    {
+        return MessageLogic.INSTANCE.getMessageFromGroup(nextGroup(), HistoryCursor.LATEST, MessageLogic.PAGE_SIZE);
+    }
+}
@@ -0,0 +1,84 @@
+package com.htwsaar.benchmarks;
+
+import com.htwsaar.Coordinator;
+import com.htwsaar.container.Message;
+import com.htwsaar.container.User;
+import com.htwsaar.server.ServerConnection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Coordinator#onNewMessages(Message[])} from the received batch to the
+ * confirmations: storing with duplicate detection, the sync cursor, the
+ * conversation cache and the sender and group lookups.
+ * <p>
+ * The {@link ServerConnection} is never connected, so the confirmations return
+ * at once and no unknown sender is requested, all senders and groups are stored
+ * before. No chat view is shown, so nothing is handed to the JavaFX dispatcher.
+ * {@code newMessages} receives a batch with new server IDs, {@code redelivered}
+ * the same batch again, which is skipped as duplicates.
+ *
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IngestBenchmark
+{
+    private static final String DATABASE = "benchmark-ingest";
+
+    @Param({"1", "50", "500"})
+    public int batch;
+
+    private Coordinator coordinator;
+    private Message[] delivered;
+    private int serverID;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        BenchmarkData.open(DATABASE);
+        BenchmarkData.storeRecipients();
+        User.ME = new User(BenchmarkData.ME, "user" + BenchmarkData.ME);
+
+        coordinator = new Coordinator();
+        delivered = BenchmarkData.messages(batch, 1, batch);
+        coordinator.onNewMessages(delivered);
+        serverID = 1 + batch;
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        BenchmarkData.close(DATABASE);
+    }
+
+    @Benchmark
+    public void newMessages()
+    {
+        Message[] messages = BenchmarkData.messages(batch, serverID, serverID);
+        serverID += batch;
+        coordinator.onNewMessages(messages);
+    }
+
+    @Benchmark
+    public void redelivered()
+    {
+        coordinator.onNewMessages(delivered);
+    }
+}
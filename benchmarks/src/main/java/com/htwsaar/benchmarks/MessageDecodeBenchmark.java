@@ -0,0 +1,88 @@
+package com.htwsaar.benchmarks;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.htwsaar.container.Message;
+import com.htwsaar.server.codec.BinaryCodec;
+import com.htwsaar.server.codec.BinaryMessageConverter;
+import com.htwsaar.server.codec.MessageStreamDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes a {@code Message[]} payload of {@code count} messages: JSON into one
+ * array as Spring's Jackson converter does, JSON and the binary encoding in
+ * chunks with {@link MessageStreamDecoder}, and the binary encoding into one array.
+ *
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageDecodeBenchmark
+{
+    /**
+     * Configured like the mapper of Spring's MappingJackson2MessageConverter
+     */
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .configure(MapperFeature.DEFAULT_VIEW_INCLUSION, false);
+
+    @Param({"100", "10000"})
+    public int count;
+
+    private byte[] json;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        Message[] messages = BenchmarkData.messages(count, 1, count);
+        json = MAPPER.writeValueAsBytes(messages);
+        binary = BinaryCodec.encode(messages);
+    }
+
+    @Benchmark
+    public Message[] json() throws IOException
+    {
+        return MAPPER.readValue(json, Message[].class);
+    }
+
+    @Benchmark
+    public void jsonChunks(Blackhole blackhole)
+    {
+        MessageStreamDecoder.decode(json, MimeTypeUtils.APPLICATION_JSON,
+                MessageStreamDecoder.DEFAULT_CHUNK_SIZE, blackhole::consume);
+    }
+
+    @Benchmark
+    public Message[] binary()
+    {
+        return BinaryCodec.decode(binary, Message[].class);
+    }
+
+    @Benchmark
+    public void binaryChunks(Blackhole blackhole)
+    {
+        MessageStreamDecoder.decode(binary, BinaryMessageConverter.BINARY,
+                MessageStreamDecoder.DEFAULT_CHUNK_SIZE, blackhole::consume);
+    }
+}
@@ -0,0 +1,63 @@
+package com.htwsaar.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.htwsaar.container.Message;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Measures the retained heap of {@value #COUNT} messages with JOL and writes it
+ * as JSON, by default to {@value #RESULT_FILE}. The texts are measured on their
+ * own as well, so the cost of the message objects can be told apart.
+ * <p>
+ * Usage: {@code MessageFootprint [result file]}
+ *
+ * @version 1.0
+ */
+public class MessageFootprint
+{
+    public static final int COUNT = 100_000;
+    public static final String RESULT_FILE = "target/footprint.json";
+
+    public static void main(String[] args) throws Exception
+    {
+        Path result = Paths.get(args.length > 0 ? args[0] : RESULT_FILE);
+
+        Message[] messages = BenchmarkData.messages(COUNT, 1, COUNT);
+        String[] texts = new String[COUNT];
+        for (int i = 0; i < COUNT; i++)
+        {
+            texts[i] = messages[i].getMessage();
+        }
+
+        GraphLayout all = GraphLayout.parseInstance((Object) messages);
+        GraphLayout text = GraphLayout.parseInstance((Object) texts);
+        System.out.println(all.toFootprint());
+
+        long messageBytes = all.totalSize() - text.totalSize();
+
+        Map<String, Object> footprint = new LinkedHashMap<>();
+        footprint.put("vm", System.getProperty("java.vm.name") + " " + System.getProperty("java.vm.version"));
+        footprint.put("messages", COUNT);
+        footprint.put("totalBytes", all.totalSize());
+        footprint.put("textBytes", text.totalSize());
+        footprint.put("messageBytes", messageBytes);
+        footprint.put("bytesPerMessage", (double) all.totalSize() / COUNT);
+        footprint.put("bytesPerMessageWithoutText", (double) messageBytes / COUNT);
+
+        if (result.getParent() != null)
+        {
+            Files.createDirectories(result.getParent());
+        }
+        new ObjectMapper()
+                .enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(result.toFile(), footprint);
+        System.out.println("Footprint written to " + result);
+    }
+}
@@ -0,0 +1,75 @@
+package com.htwsaar.benchmarks;
+
+import com.htwsaar.container.Message;
+import com.htwsaar.logic.MessageLogic;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stores {@code batch} messages one by one with {@link MessageLogic#insertMessage(Message)},
+ * i.e. one transaction per message, and as one batch with
+ * {@link MessageLogic#insertMessages(List)}. The scores are the time per batch.
+ * The messages have no server ID, so the same messages are stored again in every
+ * invocation and the table grows during the run like during a long session.
+ *
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageInsertBenchmark
+{
+    private static final String DATABASE = "benchmark-insert";
+
+    @Param({"1", "10", "100", "1000"})
+    public int batch;
+
+    private List<Message> messages;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        BenchmarkData.open(DATABASE);
+        messages = Arrays.asList(BenchmarkData.messages(batch, 0, batch));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        BenchmarkData.close(DATABASE);
+    }
+
+    @Benchmark
+    public void single(Blackhole blackhole) throws SQLException
+    {
+        for (Message message : messages)
+        {
+            blackhole.consume(MessageLogic.INSTANCE.insertMessage(message));
+        }
+    }
+
+    @Benchmark
+    public boolean batched()
+    {
+        return MessageLogic.INSTANCE.insertMessages(messages);
+    }
+}
@@ -0,0 +1,109 @@
+package com.htwsaar.benchmarks;
+
+import com.htwsaar.sql.SQLHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of {@link SQLHandler} compared with plain JDBC on a connection of
+ * its own. The handler adds the statement cache lookup, the hand-over to the
+ * reader pool or the writer thread and for writes the explicit transaction.
+ *
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SQLHandlerBenchmark
+{
+    private static final String DATABASE = "benchmark-sqlhandler";
+
+    private static final String SELECT_USER = "SELECT Name FROM Users WHERE ID = ?;";
+    private static final String UPDATE_CURSOR = "UPDATE SyncState SET LastServerID = ? WHERE Account = ?;";
+
+    private Connection jdbc;
+    private PreparedStatement jdbcSelect;
+    private PreparedStatement jdbcUpdate;
+
+    private int user;
+    private int serverID;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        BenchmarkData.open(DATABASE);
+        BenchmarkData.storeRecipients();
+        SQLHandler.sql("INSERT INTO SyncState (Account) VALUES (?);", BenchmarkData.ME).execute();
+
+        jdbc = DriverManager.getConnection("jdbc:sqlite:resources/" + DATABASE);
+        jdbcSelect = jdbc.prepareStatement(SELECT_USER);
+        jdbcUpdate = jdbc.prepareStatement(UPDATE_CURSOR);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        jdbc.close();
+        BenchmarkData.close(DATABASE);
+    }
+
+    private int nextUser()
+    {
+        user = user % BenchmarkData.USERS + 1;
+        return user;
+    }
+
+    @Benchmark
+    public String queryHandler()
+    {
+        return SQLHandler
+                .sql(SELECT_USER, nextUser())
+                .executeQuery(rs -> rs.next() ? rs.getString(1) : null);
+    }
+
+    @Benchmark
+    public String queryJdbc() throws SQLException
+    {
+        jdbcSelect.setInt(1, nextUser());
+
+        try (ResultSet rs = jdbcSelect.executeQuery())
+        {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    @Benchmark
+    public boolean executeHandler()
+    {
+        return SQLHandler
+                .sql(UPDATE_CURSOR, ++serverID, BenchmarkData.ME)
+                .execute();
+    }
+
+    @Benchmark
+    public int executeJdbc() throws SQLException
+    {
+        jdbcUpdate.setInt(1, ++serverID);
+        jdbcUpdate.setInt(2, BenchmarkData.ME);
+        return jdbcUpdate.executeUpdate();
+    }
+}
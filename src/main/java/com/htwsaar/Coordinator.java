@@ -5,13 +5,20 @@ import com.htwsaar.container.Message;
 import com.htwsaar.container.User;
 import com.htwsaar.controller.ChatController;
 import com.htwsaar.controller.CoordinatorController;
+import com.htwsaar.controller.RecipientModel;
+import com.htwsaar.controller.UiDispatcher;
+import com.htwsaar.logic.ConversationCache;
 import com.htwsaar.logic.GroupLogic;
+import com.htwsaar.logic.HistoryCursor;
 import com.htwsaar.logic.MessageLogic;
+import com.htwsaar.logic.SearchCursor;
+import com.htwsaar.logic.SearchHit;
+import com.htwsaar.logic.SyncLogic;
 import com.htwsaar.logic.UserLogic;
 import com.htwsaar.server.ServerConnection;
 import com.htwsaar.sql.SQLConnection;
+import com.htwsaar.utils.Async;
 import com.htwsaar.utils.Resources;
-import com.htwsaar.utils.Run;
 import com.htwsaar.utils.SceneSwitcher;
 import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
@@ -20,29 +27,60 @@ import javafx.scene.Scene;
 import javafx.stage.Stage;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
+import java.util.logging.Logger;
 
 public class Coordinator
 {
+    private static final Logger logger = Logger.getLogger(Coordinator.class.getName());
+
     private static int INIT_WIDTH = 1200;
     private static int INIT_HEIGHT = 800;
 
     private static int LOGIN = 0;
     private static int CHAT = 1;
 
-    private int currentDestination = -1;
-    private int currentMessageType = -1;
+    /**
+     * Continues a future on the JavaFX application thread
+     */
+    private static final Executor FX = Platform::runLater;
+
+    private volatile int currentDestination = -1;
+    private volatile int currentMessageType = -1;
 
     public Stage stage;
     private CoordinatorController currentController;
 
     private int page = -1;
 
+    private final Map<String, View> views = new HashMap<>();
+
+    /**
+     * Newest pages of recently shown conversations
+     */
+    private final ConversationCache conversations = new ConversationCache();
+
     public void start(Stage stage)
     {
         this.stage = stage;
 
+        ServerConnection.INSTANCE.addStateListener(state -> Platform.runLater(() -> {
+            if (currentController instanceof ChatController)
+            {
+                ((ChatController) currentController).setConnectionState(state);
+            }
+        }));
+
         Parent parent = load("login.fxml");
 
         if (parent != null)
@@ -54,55 +92,93 @@ public class Coordinator
         }
     }
 
+    /**
+     * Returns the view of the FXML file. Every file is parsed once per run,
+     * a view that is shown again is reset by its controller.
+     *
+     * @param name name of the FXML file
+     * @return root of the view, null if the file could not be loaded
+     */
     private Parent load(String name)
     {
-        try
-        {
-            FXMLLoader loader = new FXMLLoader(Resources.get(name));
-            Parent root = loader.load();
+        View view = views.get(name);
 
-            currentController = loader.getController();
-            currentController.setCoordinator(this);
+        if (view == null)
+        {
+            try
+            {
+                FXMLLoader loader = new FXMLLoader(Resources.get(name));
+                Parent root = loader.load();
 
-            return root;
+                view = new View(root, loader.getController());
+                view.controller.setCoordinator(this);
+                views.put(name, view);
 
-        } catch (Exception e)
-        {
-            return null;
+            } catch (Exception e)
+            {
+                return null;
+            }
         }
+
+        currentController = view.controller;
+        currentController.reset();
+
+        return view.root;
     }
 
+    /**
+     * Connects to the server and opens the local database of the user.
+     * The connection is established on the I/O executor, the scene
+     * is switched (or the login undone) on the JavaFX application thread afterwards.
+     */
     public void login(String name, String password)
     {
-        try
-        {
+        Async.run(() -> {
             ServerConnection.INSTANCE.connect(name, password);
             SQLConnection.INSTANCE.connect(name);
 
             ServerConnection.INSTANCE.getUserFromName(name, user -> {
+                if (user == null)
+                {
+                    Platform.runLater(this::logout);
+                    return;
+                }
+
                 User.ME = user;
-                switchToChatWindow(this::init);
+                Platform.runLater(() -> switchToChatWindow(this::init));
             });
-        } catch (Exception e)
-        {
-            logout();
-        }
+        }).exceptionally(e -> {
+            Platform.runLater(this::logout);
+            return null;
+        });
     }
 
     public void create(String user, String password)
     {
-        User created = ServerConnection.INSTANCE.createUser(user, password);
-        if (created != null)
-        {
-            login(created.getName(), password);
-        }
+        Async.supply(() -> ServerConnection.INSTANCE.createUser(user, password)).thenAccept(created -> {
+            if (created != null)
+            {
+                login(created.getName(), password);
+            }
+        });
     }
 
+    /**
+     * Closes the chat and both connections, runs on the JavaFX application thread.
+     */
     public void logout()
     {
-        ServerConnection.INSTANCE.close();
-        SQLConnection.INSTANCE.close();
-        switchToLoginWindow();
+        if (currentController instanceof ChatController)
+        {
+            ((ChatController) currentController).close();
+        }
+
+        conversations.clear();
+
+        Async.run(() -> {
+            ServerConnection.INSTANCE.close();
+            SQLConnection.INSTANCE.close();
+        }).whenCompleteAsync((result, e) -> switchToLoginWindow(), FX);
     }
 
     void switchToLoginWindow()
@@ -122,83 +198,282 @@ public class Coordinator
 
     void init()
     {
-        ServerConnection.INSTANCE.subscribeMessage(this::onNewMessages);
+        ((ChatController) currentController).setUserName(User.ME.getName());
+
+        int me = User.ME.getID();
+        ServerConnection.INSTANCE.subscribeMessage(this::onNewMessages, () -> SyncLogic.INSTANCE.selectCursor(me));
         ServerConnection.INSTANCE.subscribeMessageConfirmation(message -> onNewMessages(new Message[]{message}));
         ServerConnection.INSTANCE.subscribeGroups(group -> checkGroup(group.getID()));
 
         updateRecipients();
     }
 
+    /**
+     * Loads all users and groups with the time of their last message on the
+     * I/O executor and merges them into the recipient list afterwards, so users
+     * and groups shown meanwhile by {@link #showRecipient(Object)} are kept.
+     */
     public void updateRecipients()
     {
         ChatController controller = (ChatController) currentController;
+        int me = User.ME.getID();
 
-        controller.setUserName(User.ME.getName());
+        Async.supply(() -> {
+            List<Object> recipients = new ArrayList<>();
+            recipients.addAll(UserLogic.INSTANCE.selectAllUsers());
+            recipients.addAll(GroupLogic.INSTANCE.selectAllGroups());
 
-        List<User> friends = Run.safe(UserLogic.INSTANCE::selectAllUsers);
-        List<Group> groups = Run.safe(GroupLogic.INSTANCE::selectAllGroups);
+            Map<Long, Long> activity = new HashMap<>();
+            MessageLogic.INSTANCE.selectLastUserActivity(me)
+                    .forEach((id, time) -> activity.put(RecipientModel.key(RecipientModel.USER, id), time));
+            MessageLogic.INSTANCE.selectLastGroupActivity()
+                    .forEach((id, time) -> activity.put(RecipientModel.key(RecipientModel.GROUP, id), time));
+
+            controller.getDispatcher().postRecipients(model -> model.merge(recipients, activity));
+            return null;
+        });
+    }
 
-        List<Object> recipients = new ArrayList<>();
-        recipients.addAll(friends);
-        recipients.addAll(groups);
-        Platform.runLater(() -> controller.setRecipients(recipients));
+    /**
+     * Inserts or updates a single user or group in the recipient list.
+     */
+    private void showRecipient(Object recipient)
+    {
+        if (currentController instanceof ChatController)
+        {
+            ((ChatController) currentController).getDispatcher().postRecipients(model -> model.put(recipient));
+        }
     }
 
-    public void send(Message message)
+    /**
+     * Stores the message in the outbox on the I/O executor, it is sent from there.
+     *
+     * @return future that is true if the message was stored
+     */
+    public CompletableFuture<Boolean> send(Message message)
     {
-        ServerConnection.INSTANCE.sendMessage(message);
+        return Async.supply(() -> ServerConnection.INSTANCE.sendMessage(message))
+                .exceptionally(e -> false);
     }
 
+    /**
+     * Selects a conversation and shows its newest page. A recently shown page is
+     * taken from the conversation cache, otherwise it is loaded on the I/O executor
+     * and dropped if another conversation was selected meanwhile.
+     */
     public void selectRecipient(int destination, int messageType)
     {
         this.currentDestination = destination;
         this.currentMessageType = messageType;
 
-        List<Message> messages;
-        if (messageType == 0)
+        ChatController controller = (ChatController) currentController;
+
+        List<Message> cached = conversations.get(messageType, destination);
+        if (cached != null)
         {
-            messages = MessageLogic.INSTANCE.getMessagesFromUser(destination);
+            controller.setMessages(cached);
+            return;
         }
-        else if (messageType == 1)
+
+        long version = conversations.version();
+        loadMessages(HistoryCursor.LATEST).thenAcceptAsync(messages -> {
+            if (messages != null)
+            {
+                conversations.put(messageType, destination, messages, version);
+            }
+            if (messages != null && currentDestination == destination && currentMessageType == messageType)
+            {
+                controller.setMessages(messages);
+            }
+        }, FX);
+    }
+
+    /**
+     * Searches all stored messages on the I/O executor.
+     *
+     * @param query  words typed by the user
+     * @param cursor position of the result page
+     * @return hits ordered from best to worst, null on error
+     */
+    public CompletableFuture<List<SearchHit>> searchMessages(String query, SearchCursor cursor)
+    {
+        return MessageLogic.INSTANCE.searchMessagesAsync(query, cursor, MessageLogic.SEARCH_PAGE_SIZE);
+    }
+
+    /**
+     * Selects the conversation of a message and shows the message in the middle
+     * of its surrounding pages. The pages before and after it are loaded in parallel
+     * on the I/O executor.
+     *
+     * @param message message found by a search
+     */
+    public void openMessage(Message message)
+    {
+        int messageType = message.getMessageType();
+        int destination = messageType == 1 || message.getOrigin() == User.ME.getID()
+                ? message.getDestination() : message.getOrigin();
+
+        this.currentDestination = destination;
+        this.currentMessageType = messageType;
+
+        ChatController controller = (ChatController) currentController;
+
+        CompletableFuture<List<Message>> older = loadMessages(HistoryCursor.before(message));
+        CompletableFuture<List<Message>> newer = loadMessages(HistoryCursor.after(message));
+
+        older.thenAcceptBothAsync(newer, (before, after) -> {
+            if (before != null && after != null && currentDestination == destination && currentMessageType == messageType)
+            {
+                controller.showMessage(before, message, after);
+            }
+        }, FX);
+    }
+
+    /**
+     * Loads one history page of the selected conversation on the I/O executor.
+     *
+     * @param cursor position of the page
+     * @return messages ordered from old to new, null if no conversation is selected
+     */
+    public CompletableFuture<List<Message>> loadMessages(HistoryCursor cursor)
+    {
+        if (currentMessageType == 0)
         {
-            messages = MessageLogic.INSTANCE.getMessageFromGroup(destination);
+            return MessageLogic.INSTANCE.getMessagesFromUserAsync(currentDestination, cursor, MessageLogic.PAGE_SIZE);
         }
-        else
+        else if (currentMessageType == 1)
         {
-            return;
+            return MessageLogic.INSTANCE.getMessageFromGroupAsync(currentDestination, cursor, MessageLogic.PAGE_SIZE);
         }
-
-        ChatController controller = (ChatController) currentController;
-        controller.setMessages(messages);
+        return CompletableFuture.completedFuture(null);
     }
 
+    /**
+     * Ingests a batch of messages pushed by the server. The batch is stored in one
+     * transaction, unknown users and groups are resolved once per batch and the
+     * visible messages are handed to the UI in a single update. Messages whose
+     * server ID is already stored are confirmed again but not shown twice.
+     * After the confirmations the sync cursor of the account is moved past the batch.
+     * If the batch can not be stored its messages are stored one by one, see
+     * {@link #storeOneByOne(List)}. While no chat is shown nothing is handed to the UI.
+     *
+     * @param messages messages received from the server
+     */
     public void onNewMessages(Message[] messages)
     {
-        ChatController controller = (ChatController) currentController;
+        if (messages == null || messages.length == 0)
+        {
+            return;
+        }
 
-        for (Message message : messages)
+        List<Message> received = Arrays.asList(messages);
+        List<Message> stored = MessageLogic.INSTANCE.insertNewMessages(received);
+        if (stored == null)
         {
-            try
+            stored = storeOneByOne(received);
+        }
+        if (stored == null)
+        {
+            //Not confirmed, so the server delivers the batch again
+            return;
+        }
+        conversations.append(stored, User.ME.getID());
+
+        Set<Integer> users = new LinkedHashSet<>();
+        Set<Integer> groups = new LinkedHashSet<>();
+        List<Message> visible = new ArrayList<>();
+
+        for (Message message : stored)
+        {
+            users.add(message.getOrigin());
+            if (message.getMessageType() == 1)
             {
-                MessageLogic.INSTANCE.selectMessage(message.getId());
-                MessageLogic.INSTANCE.insertMessage(message);
+                groups.add(message.getDestination());
+            }
 
-                checkUser(message.getOrigin());
-                if (message.getMessageType() == 1)
-                {
-                    checkGroup(message.getDestination());
-                }
+            if ((message.getOrigin() == User.ME.getID() || message.getOrigin() == currentDestination || message.getDestination() == currentDestination) && message.getMessageType() == currentMessageType)
+            {
+                visible.add(message);
+            }
+        }
+
+        users.forEach(this::checkUser);
+        groups.forEach(this::checkGroup);
 
-                if ((message.getOrigin() == User.ME.getID() || message.getOrigin() == currentDestination || message.getDestination() == currentDestination) && message.getMessageType() == currentMessageType)
+        if (currentController instanceof ChatController)
+        {
+            UiDispatcher dispatcher = ((ChatController) currentController).getDispatcher();
+            List<Message> shown = stored;
+            dispatcher.postMessages(visible);
+            dispatcher.postRecipients(model -> {
+                for (Message message : shown)
                 {
-                    Platform.runLater(() -> controller.addMessage(message));
+                    touch(model, message);
                 }
-                ServerConnection.INSTANCE.sendConfirmation(message.getId());
-            } catch (Exception e)
+            });
+        }
+
+        for (Message message : messages)
+        {
+            ServerConnection.INSTANCE.sendConfirmation(message.getId());
+        }
+        SyncLogic.INSTANCE.advance(User.ME.getID(), received);
+    }
+
+    /**
+     * Stores the messages of a batch that could not be stored as a whole one by one,
+     * so a single message that can not be stored does not stall the ingest: it is
+     * logged and dropped, the rest of the batch is stored and everything is confirmed.
+     * If the database is not connected nothing can be stored and nothing is confirmed.
+     *
+     * @param received messages of the batch
+     * @return messages that were not stored before, null if the database is not connected
+     */
+    private List<Message> storeOneByOne(List<Message> received)
+    {
+        List<Message> stored = new ArrayList<>();
+
+        for (Message message : received)
+        {
+            List<Message> single = MessageLogic.INSTANCE.insertNewMessages(Collections.singletonList(message));
+
+            if (single != null)
             {
-                e.printStackTrace();
+                stored.addAll(single);
+            }
+            else if (!SQLConnection.INSTANCE.isConnected())
+            {
+                return null;
+            }
+            else
+            {
+                logger.warning("Message could not be stored and is dropped: " + message);
             }
         }
+        return stored;
+    }
+
+    /**
+     * Moves the conversation of the message up in the recipient list.
+     */
+    private void touch(RecipientModel model, Message message)
+    {
+        if (!message.hasTimestamp())
+        {
+            return;
+        }
+
+        long time = message.getTimeMillis();
+
+        if (message.getMessageType() == 1)
+        {
+            model.touch(RecipientModel.GROUP, message.getDestination(), time);
+        }
+        else
+        {
+            int partner = message.getOrigin() == User.ME.getID() ? message.getDestination() : message.getOrigin();
+            model.touch(RecipientModel.USER, partner, time);
+        }
     }
 
     public void addRecipient(String name)
@@ -206,17 +481,14 @@ public class Coordinator
         getUser(name, user -> {
             if (user != null)
             {
-                updateRecipients();
+                showRecipient(user);
             }
         });
     }
 
     public void createGroup(String name)
     {
-        ServerConnection.INSTANCE.createGroup(name, group -> {
-            GroupLogic.INSTANCE.insertGroup(group.getID(), group.getCreator(), group.getName());
-            updateRecipients();
-        });
+        ServerConnection.INSTANCE.createGroup(name, this::storeGroup);
     }
 
     public void addMember(String name)
@@ -249,8 +521,7 @@ public class Coordinator
         if (user == null && userID != User.ME.getID())
         {
             ServerConnection.INSTANCE.getUserFromID(userID, fetchedUser -> {
-                UserLogic.INSTANCE.insertUser(fetchedUser.getID(), fetchedUser.getName());
-                updateRecipients();
+                storeUser(fetchedUser);
             });
         }
     }
@@ -262,7 +533,7 @@ public class Coordinator
         if (user == null)
         {
             ServerConnection.INSTANCE.getUserFromID(userID, fetchedUser -> {
-                UserLogic.INSTANCE.insertUser(fetchedUser.getID(), fetchedUser.getName());
+                storeUser(fetchedUser);
                 callback.accept(fetchedUser);
             });
         }
@@ -279,7 +550,7 @@ public class Coordinator
         if (user == null)
         {
             ServerConnection.INSTANCE.getUserFromName(name, fetchedUser -> {
-                UserLogic.INSTANCE.insertUser(fetchedUser.getID(), fetchedUser.getName());
+                storeUser(fetchedUser);
                 callback.accept(fetchedUser);
             });
         }
@@ -289,6 +560,36 @@ public class Coordinator
         }
     }
 
+    /**
+     * Stores an user fetched from the server. Several callbacks of one
+     * shared server request may pass the same user, it is upserted and
+     * added to the recipient list once, a changed name replaces the old one.
+     *
+     * @param fetchedUser user sent by the server, null if unknown
+     * @return true if the user was newly inserted or changed
+     */
+    private boolean storeUser(User fetchedUser)
+    {
+        if (fetchedUser == null)
+        {
+            return false;
+        }
+
+        User known = UserLogic.INSTANCE.selectUser(fetchedUser.getID());
+        if (known != null && Objects.equals(known.getName(), fetchedUser.getName()))
+        {
+            return false;
+        }
+
+        if (!UserLogic.INSTANCE.upsertUser(fetchedUser))
+        {
+            return false;
+        }
+
+        showRecipient(fetchedUser);
+        return true;
+    }
+
     private void checkGroup(int groupID)
     {
         Group group = GroupLogic.INSTANCE.selectGroup(groupID);
@@ -296,8 +597,7 @@ public class Coordinator
         if (group == null)
         {
             ServerConnection.INSTANCE.getGroupByID(groupID, fetchedGroup -> {
-                GroupLogic.INSTANCE.insertGroup(groupID, fetchedGroup.getCreator(), fetchedGroup.getName());
-                updateRecipients();
+                storeGroup(fetchedGroup);
             });
         }
     }
@@ -309,7 +609,7 @@ public class Coordinator
         if (group == null)
         {
             ServerConnection.INSTANCE.getGroupByID(groupID, fetchedGroup -> {
-                GroupLogic.INSTANCE.insertGroup(groupID, fetchedGroup.getCreator(), fetchedGroup.getName());
+                storeGroup(fetchedGroup);
                 callback.accept(fetchedGroup);
             });
         }
@@ -326,7 +626,7 @@ public class Coordinator
         if (group == null)
         {
             ServerConnection.INSTANCE.getGroupByName(name, fetchedGroup -> {
-                GroupLogic.INSTANCE.insertGroup(fetchedGroup.getID(), fetchedGroup.getCreator(), fetchedGroup.getName());
+                storeGroup(fetchedGroup);
                 callback.accept(fetchedGroup);
             });
         }
@@ -336,12 +636,47 @@ public class Coordinator
         }
     }
 
-    private static class Worker extends Thread
+    /**
+     * Stores a group fetched from the server, see {@link #storeUser(User)}.
+     *
+     * @param fetchedGroup group sent by the server, null if unknown
+     * @return true if the group was newly inserted or changed
+     */
+    private boolean storeGroup(Group fetchedGroup)
     {
-        @Override
-        public void run()
+        if (fetchedGroup == null)
+        {
+            return false;
+        }
+
+        Group known = GroupLogic.INSTANCE.selectGroup(fetchedGroup.getID());
+        if (known != null && Objects.equals(known.getName(), fetchedGroup.getName())
+                && known.getCreator() == fetchedGroup.getCreator())
         {
+            return false;
+        }
 
+        if (!GroupLogic.INSTANCE.upsertGroup(fetchedGroup))
+        {
+            return false;
+        }
+
+        showRecipient(fetchedGroup);
+        return true;
+    }
+
+    /**
+     * Parsed FXML file with its controller
+     */
+    private static class View
+    {
+        private final Parent root;
+        private final CoordinatorController controller;
+
+        private View(Parent root, CoordinatorController controller)
+        {
+            this.root = root;
+            this.controller = controller;
         }
     }
 }
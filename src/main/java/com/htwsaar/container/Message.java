@@ -1,29 +1,53 @@
 package com.htwsaar.container;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.sql.Timestamp;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
  * Stores Message information
+ * <p>
+ * The time is held as epoch milliseconds and the type as a byte, so a message
+ * costs one object plus its text. {@link #getTimestamp()} creates the
+ * {@link Timestamp} on demand for JSON and JDBC, code that only compares
+ * or stores times should use {@link #getTimeMillis()}.
+ * <p>
+ * {@link #getId()} is the ID of the message on the server, {@link #getLocalId()}
+ * the ID of its row in the local database. Only stored messages have a local ID.
  *
  * @author Matthias Gessner
- * @version 1.0
+ * @version 1.2
  */
 public class Message
 {
+    /**
+     * Value of {@link #getTimeMillis()} for messages without time
+     */
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    /**
+     * Formatters of {@link #getTime(String)} by pattern, they are immutable and thread-safe
+     */
+    private static final Map<String, DateTimeFormatter> FORMATTERS = new ConcurrentHashMap<>();
+
     private int id;
+    private int localId;
     private int origin;
     private int destination;
     private String message;
-    private Timestamp timestamp;
+    private long timestamp = NO_TIME;
     /**
      * according to server:
      * USER_MESSAGE = 0;
      * GROUP_MESSAGE = 1;
      */
-    private int messageType;
+    private byte messageType;
 
     public Message()
     {
@@ -36,24 +60,49 @@ public class Message
 
     public void setMessageType(int messageType)
     {
-        this.messageType = messageType;
+        this.messageType = (byte) messageType;
     }
 
     public Message(int id, int origin, int destination, String message, Timestamp timestamp, int messageType)
+    {
+        this(id, origin, destination, message, timestamp == null ? NO_TIME : timestamp.getTime(), messageType);
+    }
+
+    /**
+     * @param timestamp time in epoch milliseconds, {@link #NO_TIME} if unknown
+     */
+    public Message(int id, int origin, int destination, String message, long timestamp, int messageType)
     {
         this.id = id;
         this.origin = origin;
         this.destination = destination;
         this.message = message;
         this.timestamp = timestamp;
-        this.messageType = messageType;
+        this.messageType = (byte) messageType;
     }
 
+    /**
+     * @return ID of the message on the server, 0 or less if unknown
+     */
     public int getId()
     {
         return id;
     }
 
+    /**
+     * @return ID of the row in the local database, 0 if the message is not stored
+     */
+    @JsonIgnore
+    public int getLocalId()
+    {
+        return localId;
+    }
+
+    public void setLocalId(int localId)
+    {
+        this.localId = localId;
+    }
+
     public int getOrigin()
     {
         return origin;
@@ -69,11 +118,33 @@ public class Message
         return message;
     }
 
+    /**
+     * @return new Timestamp of the message time, null if unknown
+     */
     public Timestamp getTimestamp()
+    {
+        return timestamp == NO_TIME ? null : new Timestamp(timestamp);
+    }
+
+    public void setTimestamp(Timestamp timestamp)
+    {
+        this.timestamp = timestamp == null ? NO_TIME : timestamp.getTime();
+    }
+
+    /**
+     * @return time in epoch milliseconds, {@link #NO_TIME} if unknown
+     */
+    @JsonIgnore
+    public long getTimeMillis()
     {
         return timestamp;
     }
 
+    public boolean hasTimestamp()
+    {
+        return timestamp != NO_TIME;
+    }
+
     /**
      * Converts a timestamp to a human readable string
      *
@@ -82,10 +153,16 @@ public class Message
      */
     public String getTime(String formatPattern)
     {
-        Date tmp = new Date(timestamp.getTime());
+        if (timestamp == NO_TIME)
+        {
+            return null;
+        }
+
         try
         {
-            return new SimpleDateFormat(formatPattern).format(tmp);
+            DateTimeFormatter formatter = FORMATTERS.computeIfAbsent(formatPattern,
+                    pattern -> DateTimeFormatter.ofPattern(pattern).withZone(ZoneId.systemDefault()));
+            return formatter.format(Instant.ofEpochMilli(timestamp));
         } catch (Exception e)
         {
             return null;
@@ -96,6 +173,6 @@ public class Message
     public String toString()
     {
         return new StringBuilder("ID: " + id + " O:" + origin
-                + " D:" + destination + " T:" + timestamp + " M:" + message + " isGrpM:" + messageType).toString();
+                + " D:" + destination + " T:" + getTimestamp() + " M:" + message + " isGrpM:" + messageType).toString();
     }
 }
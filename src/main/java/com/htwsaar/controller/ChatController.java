@@ -3,16 +3,26 @@ package com.htwsaar.controller;
 import com.htwsaar.container.Group;
 import com.htwsaar.container.Message;
 import com.htwsaar.container.User;
+import com.htwsaar.logic.HistoryCursor;
+import com.htwsaar.logic.MessageLogic;
+import com.htwsaar.logic.SearchCursor;
+import com.htwsaar.logic.SearchHit;
+import com.htwsaar.server.ConnectionSupervisor;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListView;
+import javafx.scene.control.ScrollBar;
 import javafx.scene.control.TextField;
 import javafx.scene.input.KeyCode;
 
-import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 
@@ -45,43 +55,93 @@ public class ChatController extends CoordinatorController
     @FXML
     private Button addMember;
 
+    @FXML
+    private Button searchMessages;
+
+    @FXML
+    private ListView<SearchHit> results;
+
     @FXML
     private Label userName;
 
+    /**
+     * Maximal number of loaded messages, pages far off-screen are evicted
+     */
+    private static final int MAX_LOADED_MESSAGES = 5 * MessageLogic.PAGE_SIZE;
+
     private ObservableList<Message> items;
 
+    private boolean hasOlder;
+    private boolean hasNewer;
+    private boolean loading;
+
+    /**
+     * Incremented whenever another conversation is shown, pages of the previous one are dropped
+     */
+    private int generation;
+
+    private boolean hasMoreResults;
+    private boolean searching;
+    private String searchQuery = "";
+
+    /**
+     * Incremented with every new search, result pages of the previous one are dropped
+     */
+    private int searchGeneration;
+
     private int messageType = 0;
     private int destination = 0;
+    private String userNameText = "";
+
+    private final RecipientModel recipientModel = new RecipientModel();
+    private final UiDispatcher dispatcher = new UiDispatcher(this::addMessages, recipientModel);
 
     private Message generateMessage()
     {
-        return new Message(-1, User.ME.getID(), destination, this.message.getText(), new Timestamp(System.currentTimeMillis()), messageType);
+        return new Message(-1, User.ME.getID(), destination, this.message.getText(), System.currentTimeMillis(), messageType);
+    }
+
+    /**
+     * Sends the typed text. If it could not be stored for sending,
+     * the text is put back into the empty input field.
+     */
+    private void sendMessage()
+    {
+        Message sent = generateMessage();
+        message.clear();
+
+        getCoordinator().send(sent).thenAcceptAsync(stored -> {
+            if (!stored && message.getText().isEmpty())
+            {
+                message.setText(sent.getMessage());
+            }
+        }, Platform::runLater);
     }
 
     public void initialize()
     {
-        send.setOnMouseClicked(event -> {
-            getCoordinator().send(generateMessage());
-            message.clear();
-        });
+        send.setOnMouseClicked(event -> sendMessage());
 
         addRecipient.setOnMouseClicked(event -> getCoordinator().addRecipient(search.getText()));
         createGroup.setOnMouseClicked(event -> getCoordinator().createGroup(search.getText()));
         addMember.setOnMouseClicked(event -> getCoordinator().addMember(search.getText()));
+        searchMessages.setOnMouseClicked(event -> search());
 
         logout.setOnMouseClicked(event -> getCoordinator().logout());
         items = FXCollections.observableArrayList();
         chat.setItems(items);
         chat.setCellFactory(param -> new ChatItem());
+        chat.skinProperty().addListener((observable, oldSkin, newSkin) ->
+                Platform.runLater(() -> watchScrolling(chat, this::loadOlder, this::loadNewer)));
 
         message.setOnKeyPressed(event -> {
             if (event.getCode().equals(KeyCode.ENTER))
             {
-                getCoordinator().send(generateMessage());
-                message.clear();
+                sendMessage();
             }
         });
 
+        recipients.setItems(recipientModel.getItems());
         recipients.setCellFactory(param -> new RecipientItem());
         recipients.setOnMouseClicked(event -> {
             Object object = recipients.getSelectionModel().getSelectedItem();
@@ -99,28 +159,314 @@ public class ChatController extends CoordinatorController
 
             getCoordinator().selectRecipient(destination, messageType);
         });
+
+        search.setOnKeyPressed(event -> {
+            if (event.getCode().equals(KeyCode.ENTER))
+            {
+                search();
+            }
+            else if (event.getCode().equals(KeyCode.ESCAPE))
+            {
+                search.clear();
+            }
+        });
+        search.textProperty().addListener((observable, oldText, newText) -> {
+            if (newText.trim().isEmpty())
+            {
+                showResults(false);
+            }
+        });
+
+        results.setCellFactory(param -> new SearchItem());
+        results.setOnMouseClicked(event -> {
+            SearchHit hit = results.getSelectionModel().getSelectedItem();
+
+            if (hit != null)
+            {
+                getCoordinator().openMessage(hit.getMessage());
+            }
+        });
+        results.skinProperty().addListener((observable, oldSkin, newSkin) ->
+                Platform.runLater(() -> watchScrolling(results, () -> {
+                }, this::loadMoreResults)));
+    }
+
+    /**
+     * Clears the chat of the last session and starts the dispatcher.
+     */
+    @Override
+    public void reset()
+    {
+        generation++;
+        loading = false;
+        hasOlder = false;
+        hasNewer = false;
+        messageType = 0;
+        destination = 0;
+
+        items.clear();
+        searchGeneration++;
+        searching = false;
+        results.getItems().clear();
+        showResults(false);
+        recipientModel.setAll(Collections.emptyList(), Collections.emptyMap());
+        message.clear();
+        search.clear();
+
+        dispatcher.start();
+    }
+
+    /**
+     * @return dispatcher for updates of this window posted from other threads
+     */
+    public UiDispatcher getDispatcher()
+    {
+        return dispatcher;
+    }
+
+    /**
+     * Stops the pending UI updates, called when the window is left.
+     */
+    public void close()
+    {
+        dispatcher.stop();
     }
 
     public void setUserName(String userName){
         this.userName.setText(userName);
+        this.userNameText = userName;
     }
 
-    public void addMessage(Message message)
+    /**
+     * Shows behind the user name if the connection to the server is lost.
+     */
+    public void setConnectionState(ConnectionSupervisor.State state)
     {
-        items.add(message);
+        boolean offline = state == ConnectionSupervisor.State.RECONNECTING;
+        this.userName.setText(offline ? userNameText + " (offline)" : userNameText);
     }
 
-    public void setMessages(List<Message> messages)
+    /**
+     * Appends new messages. They are skipped if newer pages were evicted,
+     * they will be loaded again when the user scrolls down.
+     */
+    public void addMessages(List<Message> messages)
     {
-        items.clear();
+        if (hasNewer)
+        {
+            return;
+        }
+
         items.addAll(messages);
+        evictOldest();
+    }
+
+    /**
+     * Shows the newest page of a conversation
+     */
+    public void setMessages(List<Message> messages)
+    {
+        generation++;
+        loading = false;
+
+        items.setAll(messages);
+        hasOlder = messages.size() >= MessageLogic.PAGE_SIZE;
+        hasNewer = false;
+
+        if (!items.isEmpty())
+        {
+            chat.scrollTo(items.size() - 1);
+        }
+    }
+
+    /**
+     * Shows a message found by the search in the middle of its conversation
+     * and selects its recipient.
+     *
+     * @param older   page before the message
+     * @param message message to be shown
+     * @param newer   page after the message
+     */
+    public void showMessage(List<Message> older, Message message, List<Message> newer)
+    {
+        generation++;
+        loading = false;
+
+        messageType = message.getMessageType();
+        destination = messageType == 1 || message.getOrigin() == User.ME.getID()
+                ? message.getDestination() : message.getOrigin();
+
+        Object recipient = recipientModel.get(messageType == 1 ? RecipientModel.GROUP : RecipientModel.USER, destination);
+        if (recipient != null)
+        {
+            recipients.getSelectionModel().select(recipient);
+        }
+
+        List<Message> page = new ArrayList<>(older.size() + 1 + newer.size());
+        page.addAll(older);
+        page.add(message);
+        page.addAll(newer);
+
+        items.setAll(page);
+        hasOlder = older.size() >= MessageLogic.PAGE_SIZE;
+        hasNewer = newer.size() >= MessageLogic.PAGE_SIZE;
+
+        chat.getSelectionModel().select(older.size());
+        chat.scrollTo(Math.max(0, older.size() - 3));
+    }
+
+    /**
+     * Searches the messages for the text of the search field and shows
+     * the best ranked hits instead of the recipient list.
+     */
+    private void search()
+    {
+        String query = search.getText().trim();
+        if (query.isEmpty())
+        {
+            showResults(false);
+            return;
+        }
+
+        searchQuery = query;
+        searchGeneration++;
+        searching = false;
+        hasMoreResults = false;
+        results.getItems().clear();
+        showResults(true);
+
+        loadResults(SearchCursor.FIRST);
+    }
+
+    private void loadMoreResults()
+    {
+        if (!searching && hasMoreResults && !results.getItems().isEmpty())
+        {
+            loadResults(SearchCursor.after(results.getItems().get(results.getItems().size() - 1)));
+        }
+    }
+
+    private void loadResults(SearchCursor cursor)
+    {
+        searching = true;
+        int requested = searchGeneration;
+
+        getCoordinator().searchMessages(searchQuery, cursor).whenCompleteAsync((hits, e) -> {
+            if (requested != searchGeneration)
+            {
+                return;
+            }
+
+            if (hits != null)
+            {
+                results.getItems().addAll(hits);
+                hasMoreResults = hits.size() >= MessageLogic.SEARCH_PAGE_SIZE;
+            }
+            searching = false;
+        }, Platform::runLater);
+    }
+
+    private void showResults(boolean show)
+    {
+        results.setVisible(show);
+        results.setManaged(show);
+        recipients.setVisible(!show);
+        recipients.setManaged(!show);
+    }
+
+    /**
+     * Runs the callbacks when the list is scrolled to its top or bottom end.
+     */
+    private static void watchScrolling(ListView<?> list, Runnable atTop, Runnable atBottom)
+    {
+        for (Node node : list.lookupAll(".scroll-bar"))
+        {
+            if (node instanceof ScrollBar && ((ScrollBar) node).getOrientation() == Orientation.VERTICAL)
+            {
+                ScrollBar bar = (ScrollBar) node;
+                bar.valueProperty().addListener((observable, oldValue, newValue) -> {
+                    if (newValue.doubleValue() <= bar.getMin())
+                    {
+                        atTop.run();
+                    }
+                    else if (newValue.doubleValue() >= bar.getMax())
+                    {
+                        atBottom.run();
+                    }
+                });
+                return;
+            }
+        }
+    }
+
+    private void loadOlder()
+    {
+        if (loading || !hasOlder || items.isEmpty())
+        {
+            return;
+        }
+
+        loading = true;
+        int requested = generation;
+
+        getCoordinator().loadMessages(HistoryCursor.before(items.get(0))).whenCompleteAsync((older, e) -> {
+            if (requested != generation)
+            {
+                return;
+            }
+
+            if (older == null || older.isEmpty())
+            {
+                hasOlder = e != null;
+            }
+            else
+            {
+                hasOlder = older.size() >= MessageLogic.PAGE_SIZE;
+                items.addAll(0, older);
+                chat.scrollTo(older.size());
+
+                if (items.size() > MAX_LOADED_MESSAGES)
+                {
+                    items.remove(MAX_LOADED_MESSAGES, items.size());
+                    hasNewer = true;
+                }
+            }
+            loading = false;
+        }, Platform::runLater);
+    }
+
+    private void loadNewer()
+    {
+        if (loading || !hasNewer || items.isEmpty())
+        {
+            return;
+        }
+
+        loading = true;
+        int requested = generation;
+
+        getCoordinator().loadMessages(HistoryCursor.after(items.get(items.size() - 1))).whenCompleteAsync((newer, e) -> {
+            if (requested != generation)
+            {
+                return;
+            }
+
+            if (newer != null)
+            {
+                hasNewer = newer.size() >= MessageLogic.PAGE_SIZE;
+                items.addAll(newer);
+                evictOldest();
+            }
+            loading = false;
+        }, Platform::runLater);
     }
 
-    public void setRecipients(List<Object> recipientList)
+    private void evictOldest()
     {
-        ObservableList<Object> observableList = FXCollections.observableArrayList();
-        observableList.clear();
-        observableList.addAll(recipientList);
-        recipients.setItems(observableList);
+        if (items.size() > MAX_LOADED_MESSAGES)
+        {
+            items.remove(0, items.size() - MAX_LOADED_MESSAGES);
+            hasOlder = true;
+        }
     }
 }
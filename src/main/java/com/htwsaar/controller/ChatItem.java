@@ -1,26 +1,21 @@
 package com.htwsaar.controller;
 
-import com.htwsaar.utils.Resources;
 import com.htwsaar.container.Message;
 import com.htwsaar.container.User;
-import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.geometry.Pos;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListCell;
 import javafx.scene.layout.VBox;
 
-import java.io.IOException;
-
+/**
+ * Cell of the chat list. The cell graph is built in code once per cell
+ * and reused for every message the cell shows.
+ */
 public class ChatItem extends ListCell<Message>
 {
-    @FXML
-    private Label messageText;
-
-    @FXML
-    private VBox message;
+    private final Label messageText = new Label();
 
-    private FXMLLoader mLLoader;
+    private final VBox message = new VBox(messageText);
 
     @Override
     protected void updateItem(Message message, boolean empty)
@@ -34,21 +29,6 @@ public class ChatItem extends ListCell<Message>
         }
         else
         {
-            if (mLLoader == null)
-            {
-                mLLoader = new FXMLLoader(Resources.get("chatMessage.fxml"));
-                mLLoader.setController(this);
-
-                try
-                {
-                    mLLoader.load();
-                } catch (IOException e)
-                {
-                    e.printStackTrace();
-                }
-
-            }
-
             this.messageText.setText(message.getMessage());
 
             Pos pos;
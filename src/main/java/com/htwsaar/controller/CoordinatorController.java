@@ -15,4 +15,12 @@ public class CoordinatorController
     {
         return coordinator;
     }
+
+    /**
+     * Called every time the view is shown. Views are reused,
+     * so the state of the last time has to be cleared here.
+     */
+    public void reset()
+    {
+    }
 }
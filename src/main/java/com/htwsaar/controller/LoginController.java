@@ -40,4 +40,10 @@ public class LoginController extends CoordinatorController
         login.setOnMouseClicked(event -> getCoordinator().login(name.getText(), password.getText()));
         create.setOnMouseClicked(event -> getCoordinator().create(name.getText(),password.getText()));
     }
+
+    @Override
+    public void reset()
+    {
+        password.clear();
+    }
 }
@@ -1,25 +1,21 @@
 package com.htwsaar.controller;
 
-import com.htwsaar.utils.Resources;
 import com.htwsaar.container.Group;
 import com.htwsaar.container.User;
-import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.scene.Node;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListCell;
+import javafx.scene.layout.AnchorPane;
 
-import java.io.IOException;
-
+/**
+ * Cell of the recipient list. The cell graph is built in code once per cell
+ * and reused for every recipient the cell shows.
+ */
 public class RecipientItem extends ListCell<Object>
 {
-    @FXML
-    private Node container;
-
-    @FXML
-    private Label name;
+    private final Label name = new Label();
 
-    private FXMLLoader mLLoader;
+    private final Node container = new AnchorPane(name);
 
     @Override
     protected void updateItem(Object recipient, boolean empty)
@@ -33,21 +29,6 @@ public class RecipientItem extends ListCell<Object>
         }
         else
         {
-            if (mLLoader == null)
-            {
-                mLLoader = new FXMLLoader(Resources.get("recipient.fxml"));
-                mLLoader.setController(this);
-
-                try
-                {
-                    mLLoader.load();
-                } catch (IOException e)
-                {
-                    e.printStackTrace();
-                }
-
-            }
-
             if (recipient instanceof User)
             {
                 User user = (User) recipient;
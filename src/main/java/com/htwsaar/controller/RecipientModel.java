@@ -0,0 +1,226 @@
+package com.htwsaar.controller;
+
+import com.htwsaar.container.Group;
+import com.htwsaar.container.User;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recipient list keyed by (type, id) and sorted by the last activity of the
+ * conversation, newest first. Changes are applied to the backing
+ * {@link ObservableList} one by one, so a list view keeps its selection,
+ * scroll position and cells. Must be used on the JavaFX application thread.
+ *
+ * @version 1.2
+ */
+public class RecipientModel
+{
+    public static final int USER = 0;
+    public static final int GROUP = 1;
+
+    private final ObservableList<Object> items = FXCollections.observableArrayList();
+    private final Map<Long, Object> byKey = new HashMap<>();
+    private final Map<Long, Long> activity = new HashMap<>();
+
+    private final Comparator<Object> order = Comparator
+            .comparingLong((Object recipient) -> -activityOf(recipient))
+            .thenComparing(RecipientModel::nameOf, String.CASE_INSENSITIVE_ORDER)
+            .thenComparingLong(RecipientModel::keyOf);
+
+    public ObservableList<Object> getItems()
+    {
+        return items;
+    }
+
+    public static long key(int type, int id)
+    {
+        return ((long) type << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    public static long keyOf(Object recipient)
+    {
+        if (recipient instanceof Group)
+        {
+            return key(GROUP, ((Group) recipient).getID());
+        }
+        return key(USER, ((User) recipient).getID());
+    }
+
+    private static String nameOf(Object recipient)
+    {
+        String name = recipient instanceof Group ? ((Group) recipient).getName() : ((User) recipient).getName();
+        return name == null ? "" : name;
+    }
+
+    private long activityOf(Object recipient)
+    {
+        Long time = activity.get(keyOf(recipient));
+        return time == null ? 0 : time;
+    }
+
+    /**
+     * Replaces all recipients.
+     *
+     * @param recipients   users and groups
+     * @param lastActivity time of the newest message in milliseconds by {@link #key(int, int)}
+     */
+    public void setAll(List<Object> recipients, Map<Long, Long> lastActivity)
+    {
+        byKey.clear();
+        activity.clear();
+        activity.putAll(lastActivity);
+
+        List<Object> sorted = new ArrayList<>(recipients.size());
+        for (Object recipient : recipients)
+        {
+            if (byKey.put(keyOf(recipient), recipient) == null)
+            {
+                sorted.add(recipient);
+            }
+        }
+        sorted.sort(order);
+        items.setAll(sorted);
+    }
+
+    /**
+     * Adds a snapshot of all recipients, used for the initial load. Recipients
+     * already in the list were put after the snapshot was taken and are kept,
+     * activity only moves forward like in {@link #touch(int, int, long)}.
+     *
+     * @param recipients   users and groups
+     * @param lastActivity time of the newest message in milliseconds by {@link #key(int, int)}
+     */
+    public void merge(List<Object> recipients, Map<Long, Long> lastActivity)
+    {
+        lastActivity.forEach(this::touch);
+
+        List<Object> added = new ArrayList<>();
+        for (Object recipient : recipients)
+        {
+            if (byKey.putIfAbsent(keyOf(recipient), recipient) == null)
+            {
+                added.add(recipient);
+            }
+        }
+
+        if (items.isEmpty())
+        {
+            added.sort(order);
+            items.setAll(added);
+            return;
+        }
+
+        for (Object recipient : added)
+        {
+            items.add(insertionPoint(recipient), recipient);
+        }
+    }
+
+    /**
+     * @return recipient with the passed key, null if it is not in the list
+     */
+    public Object get(int type, int id)
+    {
+        return byKey.get(key(type, id));
+    }
+
+    /**
+     * Inserts a recipient or updates an existing one with the same key.
+     */
+    public void put(Object recipient)
+    {
+        long key = keyOf(recipient);
+        Object existing = byKey.get(key);
+
+        if (existing != null)
+        {
+            if (nameOf(existing).equals(nameOf(recipient)))
+            {
+                return;
+            }
+            items.remove(indexOf(existing));
+        }
+
+        byKey.put(key, recipient);
+        items.add(insertionPoint(recipient), recipient);
+    }
+
+    /**
+     * Removes the recipient with the passed key, if present.
+     */
+    public void remove(int type, int id)
+    {
+        Object existing = byKey.remove(key(type, id));
+
+        if (existing != null)
+        {
+            items.remove(indexOf(existing));
+        }
+        activity.remove(key(type, id));
+    }
+
+    /**
+     * Records a message of a conversation and moves it up if it got newer.
+     *
+     * @param timestamp time of the message in milliseconds
+     */
+    public void touch(int type, int id, long timestamp)
+    {
+        touch(key(type, id), timestamp);
+    }
+
+    private void touch(long key, long timestamp)
+    {
+        Object existing = byKey.get(key);
+
+        if (timestamp <= activity.getOrDefault(key, 0L))
+        {
+            return;
+        }
+
+        if (existing == null)
+        {
+            activity.put(key, timestamp);
+            return;
+        }
+
+        int index = indexOf(existing);
+        activity.put(key, timestamp);
+
+        int target = insertionPoint(existing, index);
+        if (target != index)
+        {
+            items.remove(index);
+            items.add(target, existing);
+        }
+    }
+
+    private int indexOf(Object recipient)
+    {
+        int index = Collections.binarySearch(items, recipient, order);
+        return index >= 0 ? index : items.indexOf(recipient);
+    }
+
+    private int insertionPoint(Object recipient)
+    {
+        int index = Collections.binarySearch(items, recipient, order);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * Position of a recipient that is still at {@code index} but got newer.
+     * Only the part before it has to be searched.
+     */
+    private int insertionPoint(Object recipient, int index)
+    {
+        int position = Collections.binarySearch(items.subList(0, index), recipient, order);
+        return position >= 0 ? position : -position - 1;
+    }
+}
@@ -0,0 +1,38 @@
+package com.htwsaar.controller;
+
+import com.htwsaar.logic.SearchHit;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.layout.VBox;
+
+/**
+ * Cell of the search results with the matching part of the message and its time.
+ * The cell graph is built in code once per cell and reused for every hit.
+ */
+public class SearchItem extends ListCell<SearchHit>
+{
+    private final Label snippet = new Label();
+    private final Label time = new Label();
+
+    private final VBox container = new VBox(snippet, time);
+
+    @Override
+    protected void updateItem(SearchHit hit, boolean empty)
+    {
+        super.updateItem(hit, empty);
+
+        if (empty || hit == null)
+        {
+            setText(null);
+            setGraphic(null);
+        }
+        else
+        {
+            this.snippet.setText(hit.getSnippet());
+            this.time.setText(hit.getMessage().hasTimestamp() ? hit.getMessage().getTime("dd.MM.yyyy HH:mm") : "");
+
+            setText(null);
+            setGraphic(this.container);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.htwsaar.controller;
+
+import com.htwsaar.container.Message;
+import com.htwsaar.utils.Histogram;
+import javafx.animation.AnimationTimer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Collects UI updates posted from any thread and applies them at most once
+ * per JavaFX pulse. Chat appends are handed to the sink in one list, recipient
+ * changes are applied to the {@link RecipientModel} in the order they were posted.
+ *
+ * @version 1.1
+ */
+public class UiDispatcher extends AnimationTimer
+{
+    private static final Logger logger = Logger.getLogger(UiDispatcher.class.getName());
+
+    private final Consumer<List<Message>> messageSink;
+    private final RecipientModel recipients;
+
+    private final Queue<Message> messages = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final Queue<Consumer<RecipientModel>> recipientChanges = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Time of the oldest update that has not been flushed, 0 if nothing is pending
+     */
+    private final AtomicLong pendingSince = new AtomicLong();
+
+    private final Histogram queueDepth = new Histogram("ui queue depth", "updates",
+            1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1024, 4096);
+    private final Histogram flushLatency = new Histogram("ui flush latency", "ms",
+            1, 2, 5, 10, 17, 33, 50, 100, 250, 500, 1000);
+
+    /**
+     * @param messageSink appends messages to the chat, called on the JavaFX application thread
+     * @param recipients  recipient list the posted changes are applied to
+     */
+    public UiDispatcher(Consumer<List<Message>> messageSink, RecipientModel recipients)
+    {
+        this.messageSink = messageSink;
+        this.recipients = recipients;
+    }
+
+    /**
+     * Queues messages to be appended with the next pulse. Can be called from any thread.
+     */
+    public void postMessages(List<Message> posted)
+    {
+        if (posted.isEmpty())
+        {
+            return;
+        }
+
+        messages.addAll(posted);
+        depth.addAndGet(posted.size());
+        markPending();
+    }
+
+    /**
+     * Queues a change of the recipient list for the next pulse. Can be called from any thread.
+     */
+    public void postRecipients(Consumer<RecipientModel> change)
+    {
+        recipientChanges.add(change);
+        depth.incrementAndGet();
+        markPending();
+    }
+
+    private void markPending()
+    {
+        pendingSince.compareAndSet(0, System.nanoTime());
+    }
+
+    @Override
+    public void handle(long now)
+    {
+        long since = pendingSince.getAndSet(0);
+        if (since == 0)
+        {
+            return;
+        }
+
+        queueDepth.record(depth.getAndSet(0));
+
+        Consumer<RecipientModel> change;
+        while ((change = recipientChanges.poll()) != null)
+        {
+            change.accept(recipients);
+        }
+
+        List<Message> batch = new ArrayList<>();
+        Message message;
+        while ((message = messages.poll()) != null)
+        {
+            batch.add(message);
+        }
+        if (!batch.isEmpty())
+        {
+            messageSink.accept(batch);
+        }
+
+        flushLatency.record((System.nanoTime() - since) / 1_000_000);
+    }
+
+    /**
+     * @return number of updates waiting for the next pulse
+     */
+    public int getQueueDepth()
+    {
+        return depth.get();
+    }
+
+    public Histogram getQueueDepthHistogram()
+    {
+        return queueDepth;
+    }
+
+    public Histogram getFlushLatencyHistogram()
+    {
+        return flushLatency;
+    }
+
+    /**
+     * Stops flushing and logs the metrics. Pending updates are dropped.
+     */
+    @Override
+    public void stop()
+    {
+        super.stop();
+        messages.clear();
+        recipientChanges.clear();
+        depth.set(0);
+        pendingSince.set(0);
+
+        if (flushLatency.getCount() > 0)
+        {
+            logger.info(queueDepth.toString());
+            logger.info(flushLatency.toString());
+        }
+    }
+}
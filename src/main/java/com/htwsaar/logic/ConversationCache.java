@@ -0,0 +1,318 @@
+package com.htwsaar.logic;
+
+import com.htwsaar.container.Message;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Keeps the newest history page of recently shown conversations, so switching
+ * between them does not read the database. Conversations are keyed by
+ * (message type, destination) and evicted in least recently used order when
+ * the total number of messages or their estimated size exceeds the limits.
+ * <p>
+ * A page is only cached once it was loaded from the database, received
+ * messages are appended to cached pages only. Can be used from any thread.
+ *
+ * @version 1.1
+ */
+public class ConversationCache
+{
+    public static final int DEFAULT_MAX_MESSAGES = 20 * MessageLogic.PAGE_SIZE;
+    public static final long DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * Estimated heap of a message without its text: the object, the
+     * String and its array header and the list slot
+     */
+    private static final int MESSAGE_OVERHEAD = 88;
+
+    private final int pageSize;
+    private final int maxMessages;
+    private final long maxBytes;
+    private final int maxAppended;
+
+    private final LinkedHashMap<Long, Page> pages = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Sequence number of the last append by conversation, also of conversations that are not cached.
+     * Ordered from old to new, only the last {@link #maxAppended} conversations are kept.
+     */
+    private final LinkedHashMap<Long, Long> appended = new LinkedHashMap<>();
+    private long sequence;
+
+    /**
+     * Newest sequence number that was dropped from {@link #appended}
+     */
+    private long forgotten = -1;
+
+    private int messages;
+    private long bytes;
+    private long hits;
+    private long misses;
+
+    public ConversationCache()
+    {
+        this(MessageLogic.PAGE_SIZE, DEFAULT_MAX_MESSAGES, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param pageSize    maximal number of messages per conversation
+     * @param maxMessages maximal number of messages of all conversations
+     * @param maxBytes    maximal estimated size of all messages
+     */
+    public ConversationCache(int pageSize, int maxMessages, long maxBytes)
+    {
+        this.pageSize = pageSize;
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+        this.maxAppended = Math.max(1, maxMessages / pageSize);
+    }
+
+    private static long key(int messageType, int destination)
+    {
+        return ((long) messageType << 32) | (destination & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return conversation of the message from the view of the own user
+     */
+    private static long keyOf(Message message, int me)
+    {
+        if (message.getMessageType() == 1 || message.getOrigin() == me)
+        {
+            return key(message.getMessageType(), message.getDestination());
+        }
+        return key(message.getMessageType(), message.getOrigin());
+    }
+
+    private static long sizeOf(Message message)
+    {
+        return MESSAGE_OVERHEAD + (message.getMessage() == null ? 0 : 2L * message.getMessage().length());
+    }
+
+    /**
+     * @return copy of the cached page ordered from old to new, null if the conversation is not cached
+     */
+    public synchronized List<Message> get(int messageType, int destination)
+    {
+        Page page = pages.get(key(messageType, destination));
+
+        if (page == null)
+        {
+            misses++;
+            return null;
+        }
+        hits++;
+        return new ArrayList<>(page.messages);
+    }
+
+    /**
+     * Call before the page of a conversation is loaded from the database and
+     * pass the result to {@link #put(int, int, List, long)}.
+     *
+     * @return current version of the cache
+     */
+    public synchronized long version()
+    {
+        return sequence;
+    }
+
+    /**
+     * Caches the newest page of a conversation. The page is dropped if a message
+     * of the conversation was appended since the version was read, the page
+     * might miss it. If the conversation was not among the recently appended
+     * ones, the page is dropped if any forgotten append is newer.
+     *
+     * @param page    newest page ordered from old to new
+     * @param version result of {@link #version()} before the page was loaded
+     */
+    public synchronized void put(int messageType, int destination, List<Message> page, long version)
+    {
+        long key = key(messageType, destination);
+
+        if (appended.getOrDefault(key, forgotten) > version)
+        {
+            return;
+        }
+
+        remove(key);
+        Page cached = new Page();
+        for (Message message : page)
+        {
+            cached.add(message);
+        }
+        pages.put(key, cached);
+        messages += cached.messages.size();
+        bytes += cached.bytes;
+
+        trim(cached);
+        evict();
+    }
+
+    /**
+     * Appends received messages to the pages of their conversations.
+     *
+     * @param received stored messages, in any order
+     * @param me       ID of the own user
+     */
+    public synchronized void append(List<Message> received, int me)
+    {
+        sequence++;
+
+        for (Message message : received)
+        {
+            long key = keyOf(message, me);
+            appended.remove(key);
+            appended.put(key, sequence);
+
+            Page page = pages.get(key);
+            if (page != null)
+            {
+                messages++;
+                bytes += sizeOf(message);
+                page.insert(message);
+                trim(page);
+            }
+        }
+        forget();
+        evict();
+    }
+
+    /**
+     * Removes all pages, e.g. after a logout.
+     */
+    public synchronized void clear()
+    {
+        pages.clear();
+        appended.clear();
+        forgotten = -1;
+        messages = 0;
+        bytes = 0;
+    }
+
+    /**
+     * @return number of cached messages
+     */
+    public synchronized int getMessageCount()
+    {
+        return messages;
+    }
+
+    /**
+     * @return estimated size of the cached messages in bytes
+     */
+    public synchronized long getByteSize()
+    {
+        return bytes;
+    }
+
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    private void remove(long key)
+    {
+        Page page = pages.remove(key);
+
+        if (page != null)
+        {
+            messages -= page.messages.size();
+            bytes -= page.bytes;
+        }
+    }
+
+    /**
+     * Drops the oldest appends until at most {@link #maxAppended} conversations are left.
+     */
+    private void forget()
+    {
+        Iterator<Long> iterator = appended.values().iterator();
+
+        while (appended.size() > maxAppended)
+        {
+            forgotten = iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Drops the oldest messages of a page that grew over the page size.
+     */
+    private void trim(Page page)
+    {
+        while (page.messages.size() > pageSize)
+        {
+            Message oldest = page.messages.remove(0);
+            page.bytes -= sizeOf(oldest);
+            messages--;
+            bytes -= sizeOf(oldest);
+        }
+    }
+
+    /**
+     * Evicts the least recently used pages until the limits are met.
+     */
+    private void evict()
+    {
+        Iterator<Page> iterator = pages.values().iterator();
+
+        while ((messages > maxMessages || bytes > maxBytes) && iterator.hasNext())
+        {
+            Page page = iterator.next();
+            messages -= page.messages.size();
+            bytes -= page.bytes;
+            iterator.remove();
+        }
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "conversation cache: " + pages.size() + " conversations, " + messages + " messages, " +
+                bytes / 1024 + " KiB, " + hits + " hits, " + misses + " misses";
+    }
+
+    /**
+     * Newest messages of one conversation ordered by (Timestamp, local ID)
+     */
+    private static class Page
+    {
+        private final ArrayList<Message> messages = new ArrayList<>();
+        private long bytes;
+
+        private void add(Message message)
+        {
+            messages.add(message);
+            bytes += sizeOf(message);
+        }
+
+        /**
+         * Inserts a received message at its position, usually at the end.
+         */
+        private void insert(Message message)
+        {
+            int index = messages.size();
+            while (index > 0 && isAfter(messages.get(index - 1), message))
+            {
+                index--;
+            }
+            messages.add(index, message);
+            bytes += sizeOf(message);
+        }
+
+        private static boolean isAfter(Message a, Message b)
+        {
+            return a.getTimeMillis() > b.getTimeMillis()
+                    || (a.getTimeMillis() == b.getTimeMillis() && a.getLocalId() > b.getLocalId());
+        }
+    }
+}
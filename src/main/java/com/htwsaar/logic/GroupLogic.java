@@ -8,17 +8,27 @@ import com.htwsaar.sql.SQLHandler;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Provides methods to interact with the database table Group.
  *
  * @author Matthias Gessner
- * @version 1.2
+ * @version 1.4
  */
 public class GroupLogic
 {
     public final static GroupLogic INSTANCE = new GroupLogic();
 
+    /**
+     * Inserts a group, a conflicting ID updates name and creator if they changed
+     */
+    private static final String UPSERT_GROUP = "INSERT INTO Groups (ID, Name, Creator) VALUES (?, ?, ?) " +
+            "ON CONFLICT (ID) DO UPDATE SET Name = excluded.Name, Creator = excluded.Creator " +
+            "WHERE Name IS NOT excluded.Name OR Creator IS NOT excluded.Creator;";
+
+    private final IdentityCache<Group> cache = new IdentityCache<>(Group::getID, Group::getName);
+
     /**
      * Private constructor (singleton pattern)
      * called by GroupLogic INSTANCE
@@ -28,6 +38,23 @@ public class GroupLogic
 
     }
 
+    /**
+     * Loads all rows of database table Groups into the cache.
+     * Called once after the database connection is established.
+     */
+    public void warmCache()
+    {
+        cache.load(loadAllGroups());
+    }
+
+    /**
+     * Empties the cache, following lookups read the database again.
+     */
+    public void clearCache()
+    {
+        cache.clear();
+    }
+
     /**
      * Checks if an user is in a group
      *
@@ -54,6 +81,11 @@ public class GroupLogic
      */
     public Group selectGroup(int ID)
     {
+        if (cache.isLoaded())
+        {
+            return cache.get(ID);
+        }
+
         return SQLHandler
                 .sql("SELECT ID, Name, Creator FROM Groups WHERE ID = ?;", ID)
                 .executeQuery(rs -> !rs.next() ? null :
@@ -73,6 +105,11 @@ public class GroupLogic
     //FIXME @OPTIONAL (very low priority) can we fix this so group names can be reusable?
     public Group selectGroup(String name)
     {
+        if (cache.isLoaded())
+        {
+            return cache.get(name);
+        }
+
         return SQLHandler
                 .sql("SELECT ID, Name, Creator FROM Groups WHERE name = ?;", name)
                 .executeQuery(rs -> !rs.next() ? null :
@@ -111,6 +148,16 @@ public class GroupLogic
      * @throws SQLException database connection lost, sql-Syntax-Error
      */
     public ArrayList<Group> selectAllGroups()
+    {
+        if (cache.isLoaded())
+        {
+            return new ArrayList<>(cache.values());
+        }
+
+        return loadAllGroups();
+    }
+
+    private ArrayList<Group> loadAllGroups()
     {
         ArrayList<Group> tmp = new ArrayList<>();
         return SQLHandler
@@ -128,19 +175,66 @@ public class GroupLogic
     }
 
     /**
-     * Inserts a new row in the Groups table.
+     * Inserts a new row in the Groups table, an existing row with
+     * the same ID is updated instead, see {@link #upsertGroup(Group)}.
      *
      * @param creatorID User ID of creator
      * @param name      Name of the group
-     * @return groupID if successfully inserted, otherwise -1
-     * @throws SQLException database connection lost, sql-Syntax-Error
+     * @return true if the group is stored afterwards otherwise false
      */
     public boolean insertGroup(int groupID, int creatorID, String name)
     {
-        return SQLHandler
-                .sql("INSERT INTO Groups (Id, Name, Creator) VALUES (?, ?, ?);",
-                        groupID, name, creatorID)
+        return upsertGroup(new Group(groupID, name, creatorID));
+    }
+
+    /**
+     * Inserts a group or updates name and creator of the row with the same ID.
+     * Storing an unchanged group again writes nothing and does not fail.
+     *
+     * @param group group sent by the server
+     * @return true if the group is stored afterwards otherwise false
+     */
+    public boolean upsertGroup(Group group)
+    {
+        boolean stored = SQLHandler
+                .sql(UPSERT_GROUP, group.getID(), group.getName(), group.getCreator())
                 .execute();
+
+        if (stored)
+        {
+            cache.put(new Group(group.getID(), group.getName(), group.getCreator()));
+        }
+        return stored;
+    }
+
+    /**
+     * Upserts several groups with one reused statement in a single transaction,
+     * see {@link #upsertGroup(Group)}.
+     *
+     * @param groups groups sent by the server
+     * @return true if all groups are stored afterwards otherwise false
+     */
+    public boolean upsertGroups(List<Group> groups)
+    {
+        List<Object[]> rows = new ArrayList<>(groups.size());
+
+        for (Group group : groups)
+        {
+            rows.add(new Object[]{group.getID(), group.getName(), group.getCreator()});
+        }
+
+        boolean stored = SQLHandler
+                .sql(UPSERT_GROUP)
+                .executeBatch(rows);
+
+        if (stored)
+        {
+            for (Group group : groups)
+            {
+                cache.put(new Group(group.getID(), group.getName(), group.getCreator()));
+            }
+        }
+        return stored;
     }
 
     /**
@@ -152,9 +246,15 @@ public class GroupLogic
      */
     public boolean deleteGroup(int chatID) throws SQLException
     {
-        return SQLHandler
+        boolean deleted = SQLHandler
                 .sql("DELETE FROM Groups WHERE ID = ?;", chatID)
                 .execute();
+
+        if (deleted)
+        {
+            cache.remove(chatID);
+        }
+        return deleted;
     }
 
     /**
@@ -167,9 +267,16 @@ public class GroupLogic
      */
     public boolean updateGroupCreator(int chatID, int newCreatorID) throws SQLException
     {
-        return SQLHandler
-                .sql("UPDATE CHAT SET Creator = ? WHERE ID = ?;", newCreatorID, chatID)
+        boolean updated = SQLHandler
+                .sql("UPDATE Groups SET Creator = ? WHERE ID = ?;", newCreatorID, chatID)
                 .execute();
+
+        Group group = cache.get(chatID);
+        if (updated && group != null)
+        {
+            cache.put(new Group(chatID, group.getName(), newCreatorID));
+        }
+        return updated;
     }
 
     /**
@@ -182,9 +289,16 @@ public class GroupLogic
      */
     public boolean updateGroupName(int chatID, String name) throws SQLException
     {
-        return SQLHandler
+        boolean updated = SQLHandler
                 .sql("UPDATE Groups SET Name = ? WHERE ID = ?;", name, chatID)
                 .execute();
+
+        Group group = cache.get(chatID);
+        if (updated && group != null)
+        {
+            cache.put(new Group(chatID, name, group.getCreator()));
+        }
+        return updated;
     }
 
     /**
@@ -228,6 +342,11 @@ public class GroupLogic
      */
     public boolean groupExists(int id) throws SQLException
     {
+        if (cache.isLoaded())
+        {
+            return cache.get(id) != null;
+        }
+
         return SQLHandler
                 .sql("SELECT * FROM Groups WHERE ID = ?", id)
                 .executeQuery(rs -> rs.next());
@@ -0,0 +1,76 @@
+package com.htwsaar.logic;
+
+import com.htwsaar.container.Message;
+
+/**
+ * Position in a conversation for keyset paginated history queries.
+ * Messages are ordered by (Timestamp, ID) with the local row ID, see
+ * {@link Message#getLocalId()}, a cursor selects the page directly before
+ * or after such a position.
+ *
+ * @version 1.2
+ */
+public class HistoryCursor
+{
+    /**
+     * Selects the newest page of a conversation.
+     */
+    public static final HistoryCursor LATEST = new HistoryCursor(0, 0, false, true);
+
+    private final long timestamp;
+    private final int id;
+    private final boolean after;
+    private final boolean latest;
+
+    private HistoryCursor(long timestamp, int id, boolean after, boolean latest)
+    {
+        this.timestamp = timestamp;
+        this.id = id;
+        this.after = after;
+        this.latest = latest;
+    }
+
+    /**
+     * @param message oldest loaded message
+     * @return cursor of the page of older messages
+     */
+    public static HistoryCursor before(Message message)
+    {
+        return new HistoryCursor(message.getTimeMillis(), message.getLocalId(), false, false);
+    }
+
+    /**
+     * @param message newest loaded message
+     * @return cursor of the page of newer messages
+     */
+    public static HistoryCursor after(Message message)
+    {
+        return new HistoryCursor(message.getTimeMillis(), message.getLocalId(), true, false);
+    }
+
+    /**
+     * @return time of the message in epoch milliseconds
+     */
+    public long getTimestamp()
+    {
+        return timestamp;
+    }
+
+    /**
+     * @return local row ID of the message
+     */
+    public int getId()
+    {
+        return id;
+    }
+
+    public boolean isAfter()
+    {
+        return after;
+    }
+
+    public boolean isLatest()
+    {
+        return latest;
+    }
+}
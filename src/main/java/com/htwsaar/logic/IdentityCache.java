@@ -0,0 +1,118 @@
+package com.htwsaar.logic;
+
+import com.htwsaar.utils.IntMap;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Write-through cache of the rows of one table, indexed by ID and by name.
+ * Once it is loaded it holds every row, so a miss means that the row
+ * does not exist and no database read is necessary.
+ *
+ * @param <T> container type (User, Group)
+ * @version 1.0
+ */
+class IdentityCache<T>
+{
+    private final ToIntFunction<T> idOf;
+    private final Function<T, String> nameOf;
+
+    private final IntMap<T> byID = new IntMap<>();
+    private final HashMap<String, T> byName = new HashMap<>();
+    private boolean loaded;
+
+    /**
+     * @param idOf   returns the ID (primary key) of an entry
+     * @param nameOf returns the name (unique column) of an entry, may return null
+     */
+    IdentityCache(ToIntFunction<T> idOf, Function<T, String> nameOf)
+    {
+        this.idOf = idOf;
+        this.nameOf = nameOf;
+    }
+
+    /**
+     * Replaces the content of the cache with all rows of the table.
+     *
+     * @param entries all rows of the table, null if they could not be loaded
+     */
+    synchronized void load(List<T> entries)
+    {
+        clear();
+
+        if (entries != null)
+        {
+            entries.forEach(this::put);
+            loaded = true;
+        }
+    }
+
+    /**
+     * @return true if the cache holds every row of the table
+     */
+    synchronized boolean isLoaded()
+    {
+        return loaded;
+    }
+
+    synchronized T get(int id)
+    {
+        return byID.get(id);
+    }
+
+    synchronized T get(String name)
+    {
+        return name == null ? null : byName.get(name);
+    }
+
+    synchronized List<T> values()
+    {
+        return byID.values();
+    }
+
+    synchronized void put(T entry)
+    {
+        T old = byID.put(idOf.applyAsInt(entry), entry);
+
+        if (old != null && nameOf.apply(old) != null)
+        {
+            byName.remove(nameOf.apply(old));
+        }
+
+        String name = nameOf.apply(entry);
+        if (name != null)
+        {
+            byName.put(name, entry);
+        }
+    }
+
+    synchronized void remove(int id)
+    {
+        T old = byID.remove(id);
+
+        if (old != null && nameOf.apply(old) != null)
+        {
+            byName.remove(nameOf.apply(old));
+        }
+    }
+
+    synchronized void remove(String name)
+    {
+        T old = byName.remove(name);
+
+        if (old != null)
+        {
+            byID.remove(idOf.applyAsInt(old));
+        }
+    }
+
+    synchronized void clear()
+    {
+        byID.clear();
+        byName.clear();
+        loaded = false;
+    }
+}
@@ -2,20 +2,54 @@ package com.htwsaar.logic;
 
 import com.htwsaar.container.Message;
 import com.htwsaar.sql.SQLHandler;
+import com.htwsaar.utils.Async;
 
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Provides methods to interact with the database table ClientMessage.
  *
  * @author Matthias Gessner
- * @version 1.2
+ * @version 1.9
  */
 public class MessageLogic
 {
     public final static MessageLogic INSTANCE = new MessageLogic();
 
+    /**
+     * Number of messages of a history page
+     */
+    public final static int PAGE_SIZE = 100;
+
+    /**
+     * Number of hits of a search result page
+     */
+    public final static int SEARCH_PAGE_SIZE = 50;
+
+    /**
+     * Skips messages whose server ID is already stored, see migration 4 of SQLDatabase
+     */
+    private static final String INSERT_MESSAGE = "INSERT INTO Messages (ServerID, Origin, Destination, " +
+            "Message, Timestamp, MessageType) VALUES (?, ?, ?, ?, ?, ?) ON CONFLICT (ServerID) DO NOTHING;";
+
+    /**
+     * Inserts a message, a conflicting server ID updates the stored row if it differs
+     */
+    private static final String UPSERT_MESSAGE = "INSERT INTO Messages (ServerID, Origin, Destination, " +
+            "Message, Timestamp, MessageType) VALUES (?, ?, ?, ?, ?, ?) ON CONFLICT (ServerID) DO UPDATE SET " +
+            "Origin = excluded.Origin, Destination = excluded.Destination, Message = excluded.Message, " +
+            "Timestamp = excluded.Timestamp, MessageType = excluded.MessageType " +
+            "WHERE Origin IS NOT excluded.Origin OR Destination IS NOT excluded.Destination " +
+            "OR Message IS NOT excluded.Message OR Timestamp IS NOT excluded.Timestamp " +
+            "OR MessageType IS NOT excluded.MessageType;";
+
     /**
      * Private constructor (singleton pattern)
      * called by MessageLogic INSTANCE
@@ -35,13 +69,7 @@ public class MessageLogic
     {
         return SQLHandler
                 .sql("SELECT * FROM Messages WHERE ID = ?;", messageID)
-                .executeQuery(rs -> !rs.next() ? null :
-                        new Message(rs.getInt("ID"),
-                                rs.getInt("Origin"),
-                                rs.getInt("Destination"),
-                                rs.getString("Message"),
-                                rs.getTimestamp("Timestamp"),
-                                rs.getInt("messageType")));
+                .executeQuery(rs -> !rs.next() ? null : readMessage(rs));
     }
 
     /**
@@ -61,12 +89,7 @@ public class MessageLogic
                 {
                     while (rs.next())
                     {
-                        tmp.add(new Message(rs.getInt("ID"),
-                                rs.getInt("Origin"),
-                                rs.getInt("Destination"),
-                                rs.getString("Message"),
-                                rs.getTimestamp("Timestamp"),
-                                rs.getInt("messageType")));
+                        tmp.add(readMessage(rs));
                     }
                     return tmp;
                 });
@@ -89,36 +112,407 @@ public class MessageLogic
                 {
                     while (rs.next())
                     {
-                        tmp.add(new Message(rs.getInt("ID"),
-                                rs.getInt("Origin"),
-                                rs.getInt("Destination"),
-                                rs.getString("Message"),
-                                rs.getTimestamp("Timestamp"),
-                                rs.getInt("messageType")));
+                        tmp.add(readMessage(rs));
+                    }
+                    return tmp;
+                });
+    }
+
+    /**
+     * Loads one page of the conversation with a specific group.
+     *
+     * @param groupID Group Identifier (foreign key)
+     * @param cursor  position of the page
+     * @param limit   maximal number of messages
+     * @return ArrayList of Messages, ordered from old to new
+     */
+    public ArrayList<Message> getMessageFromGroup(int groupID, HistoryCursor cursor, int limit)
+    {
+        return getPage(new String[]{"MessageType = 1 AND Destination = ?"}, groupID, cursor, limit);
+    }
+
+    /**
+     * Loads one page of the conversation with a specific User.
+     *
+     * @param userID User identifier (primary key)
+     * @param cursor position of the page
+     * @param limit  maximal number of messages
+     * @return ArrayList of Messages, ordered from old to new
+     */
+    public ArrayList<Message> getMessagesFromUser(int userID, HistoryCursor cursor, int limit)
+    {
+        return getPage(new String[]{"MessageType = 0 AND Origin = ?", "MessageType = 0 AND Destination = ?"},
+                userID, cursor, limit);
+    }
+
+    /**
+     * Loads one page of a group conversation on the I/O executor,
+     * see {@link #getMessageFromGroup(int, HistoryCursor, int)}.
+     */
+    public CompletableFuture<List<Message>> getMessageFromGroupAsync(int groupID, HistoryCursor cursor, int limit)
+    {
+        return Async.supply(() -> getMessageFromGroup(groupID, cursor, limit));
+    }
+
+    /**
+     * Loads one page of an user conversation on the I/O executor,
+     * see {@link #getMessagesFromUser(int, HistoryCursor, int)}.
+     */
+    public CompletableFuture<List<Message>> getMessagesFromUserAsync(int userID, HistoryCursor cursor, int limit)
+    {
+        return Async.supply(() -> getMessagesFromUser(userID, cursor, limit));
+    }
+
+    /**
+     * Loads a page of messages ordered by (Timestamp, ID) with keyset pagination.
+     * Every condition is answered by one index of the Messages table,
+     * several conditions are combined with UNION instead of OR so that
+     * each of them can still use its index.
+     *
+     * @param conditions sql conditions that select the conversation, each with one parameter
+     * @param parameter  parameter of the conditions
+     * @param cursor     position of the page
+     * @param limit      maximal number of messages
+     * @return ArrayList of Messages, ordered from old to new
+     */
+    private ArrayList<Message> getPage(String[] conditions, int parameter, HistoryCursor cursor, int limit)
+    {
+        String compare = cursor.isAfter() ? ">" : "<";
+        String order = " ORDER BY Timestamp " + (cursor.isAfter() ? "ASC" : "DESC") +
+                ", ID " + (cursor.isAfter() ? "ASC" : "DESC") + " LIMIT ?";
+
+        StringBuilder sql = new StringBuilder();
+        List<Object> params = new ArrayList<>();
+
+        for (String condition : conditions)
+        {
+            if (sql.length() > 0)
+            {
+                sql.append(" UNION ");
+            }
+
+            sql.append("SELECT * FROM (SELECT * FROM Messages WHERE ").append(condition);
+            params.add(parameter);
+
+            if (!cursor.isLatest())
+            {
+                sql.append(" AND (Timestamp ").append(compare).append(" ? OR (Timestamp = ? AND ID ").append(compare).append(" ?))");
+                params.add(cursor.getTimestamp());
+                params.add(cursor.getTimestamp());
+                params.add(cursor.getId());
+            }
+
+            sql.append(order).append(")");
+            params.add(limit);
+        }
+
+        if (conditions.length > 1)
+        {
+            sql.append(order);
+            params.add(limit);
+        }
+
+        ArrayList<Message> tmp = new ArrayList<>();
+
+        ArrayList<Message> page = SQLHandler
+                .sql(sql.toString(), params.toArray())
+                .executeQuery(rs ->
+                {
+                    while (rs.next())
+                    {
+                        tmp.add(readMessage(rs));
                     }
                     return tmp;
                 });
+
+        if (page != null && !cursor.isAfter())
+        {
+            Collections.reverse(page);
+        }
+        return page;
+    }
+
+    /**
+     * Searches the texts of all stored messages with the full-text index.
+     * Every word of the query has to occur in a hit, the last one may be
+     * the beginning of a word. Hits are ranked by bm25 and paginated by
+     * (score, ID) like the history pages.
+     *
+     * @param query  words typed by the user, no FTS syntax
+     * @param cursor position of the page
+     * @param limit  maximal number of hits
+     * @return hits ordered from best to worst, empty for an empty query, null on error
+     */
+    public ArrayList<SearchHit> searchMessages(String query, SearchCursor cursor, int limit)
+    {
+        String match = toMatchExpression(query);
+        ArrayList<SearchHit> tmp = new ArrayList<>();
+
+        if (match == null)
+        {
+            return tmp;
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT m.*, bm25(MessageSearch) AS Score, " +
+                "snippet(MessageSearch, 0, '[', ']', '...', 12) AS Snippet " +
+                "FROM MessageSearch JOIN Messages m ON m.ID = MessageSearch.rowid " +
+                "WHERE MessageSearch MATCH ?");
+        List<Object> params = new ArrayList<>();
+        params.add(match);
+
+        if (!cursor.isFirst())
+        {
+            sql.append(" AND (bm25(MessageSearch) > ? OR (bm25(MessageSearch) = ? AND m.ID > ?))");
+            params.add(cursor.getScore());
+            params.add(cursor.getScore());
+            params.add(cursor.getId());
+        }
+        sql.append(" ORDER BY Score, m.ID LIMIT ?;");
+        params.add(limit);
+
+        return SQLHandler
+                .sql(sql.toString(), params.toArray())
+                .executeQuery(rs ->
+                {
+                    while (rs.next())
+                    {
+                        tmp.add(new SearchHit(readMessage(rs), rs.getString("Snippet"), rs.getDouble("Score")));
+                    }
+                    return tmp;
+                });
+    }
+
+    /**
+     * Searches messages on the I/O executor, see {@link #searchMessages(String, SearchCursor, int)}.
+     */
+    public CompletableFuture<List<SearchHit>> searchMessagesAsync(String query, SearchCursor cursor, int limit)
+    {
+        return Async.supply(() -> searchMessages(query, cursor, limit));
+    }
+
+    /**
+     * Quotes every word of the query, so operators and special characters typed
+     * by the user are searched literally. Only the last word is a prefix query,
+     * prefix queries of short words match large parts of the index.
+     *
+     * @return FTS5 match expression, null if the query has no words
+     */
+    static String toMatchExpression(String query)
+    {
+        if (query == null)
+        {
+            return null;
+        }
+
+        StringBuilder match = new StringBuilder();
+        for (String word : query.trim().split("\\s+"))
+        {
+            if (word.isEmpty())
+            {
+                continue;
+            }
+            if (match.length() > 0)
+            {
+                match.append(' ');
+            }
+            match.append('"').append(word.replace("\"", "\"\"")).append('"');
+        }
+
+        return match.length() == 0 ? null : match.append('*').toString();
+    }
+
+    /**
+     * Reads the time of the newest message of every user conversation.
+     *
+     * @param userID identifier of the own user
+     * @return timestamp in milliseconds by the ID of the conversation partner, empty on error
+     */
+    public Map<Integer, Long> selectLastUserActivity(int userID)
+    {
+        return selectLastActivity("SELECT Partner, MAX(Timestamp) AS Latest FROM (" +
+                "SELECT Destination AS Partner, Timestamp FROM Messages WHERE MessageType = 0 AND Origin = ? " +
+                "UNION ALL " +
+                "SELECT Origin AS Partner, Timestamp FROM Messages WHERE MessageType = 0 AND Destination = ?) " +
+                "GROUP BY Partner;", userID, userID);
+    }
+
+    /**
+     * Reads the time of the newest message of every group conversation.
+     *
+     * @return timestamp in milliseconds by group ID, empty on error
+     */
+    public Map<Integer, Long> selectLastGroupActivity()
+    {
+        return selectLastActivity("SELECT Destination AS Partner, MAX(Timestamp) AS Latest FROM Messages " +
+                "WHERE MessageType = 1 GROUP BY Destination;");
+    }
+
+    private Map<Integer, Long> selectLastActivity(String sql, Object... params)
+    {
+        Map<Integer, Long> activity = new HashMap<>();
+
+        SQLHandler
+                .sql(sql, params)
+                .executeQuery(rs ->
+                {
+                    while (rs.next())
+                    {
+                        activity.put(rs.getInt("Partner"), rs.getLong("Latest"));
+                    }
+                    return activity;
+                });
+        return activity;
     }
 
     /**
      * Insert a new entry in database table ClientMessage.
+     * A message with a server ID that is already stored is skipped.
      *
-     * @param message ClientMessage object
-     * @return ID of inserted row if successful otherwise -1
+     * @param message ClientMessage object, its ID is the server ID
+     * @return ID of inserted row if successful otherwise -1, also if the message was skipped
      * @throws SQLException database connection lost, sql-Syntax-Error
      */
     public long insertMessage(Message message) throws SQLException
+    {
+        Long id = SQLHandler
+                .sql(INSERT_MESSAGE, row(message.getId(), message))
+                .executeInsert();
+
+        if (id == null || id < 0)
+        {
+            return -1;
+        }
+        message.setLocalId(id.intValue());
+        return id;
+    }
+
+    /**
+     * Inserts a batch of messages in database table ClientMessage.
+     * The whole batch is written with one reused statement in a single transaction.
+     *
+     * @param messages ClientMessage objects
+     * @return true if all messages were stored otherwise false
+     */
+    public boolean insertMessages(List<Message> messages)
+    {
+        return insertNewMessages(messages) != null;
+    }
+
+    /**
+     * Inserts a batch of messages like {@link #insertMessages(List)} and skips
+     * the messages whose server ID is already stored, so a delivery that
+     * arrives twice is stored once.
+     *
+     * @param messages ClientMessage objects, their IDs are the server IDs
+     * @return messages that were not stored before with their local IDs set,
+     * null if the batch could not be stored
+     */
+    public List<Message> insertNewMessages(List<Message> messages)
+    {
+        List<Object[]> rows = new ArrayList<>(messages.size());
+
+        for (Message message : messages)
+        {
+            rows.add(row(message.getId(), message));
+        }
+
+        long[] ids = SQLHandler
+                .sql(INSERT_MESSAGE)
+                .executeInserts(rows);
+
+        if (ids == null)
+        {
+            return null;
+        }
+
+        List<Message> inserted = new ArrayList<>(messages.size());
+        for (int i = 0; i < ids.length; i++)
+        {
+            if (ids[i] > 0)
+            {
+                Message message = messages.get(i);
+                message.setLocalId((int) ids[i]);
+                inserted.add(message);
+            }
+        }
+        return inserted;
+    }
+
+    /**
+     * Inserts a message or updates the stored message with the same server ID.
+     * Storing an unchanged message again writes nothing and does not fail.
+     * The server ID is passed explicitly, a message loaded from the database
+     * must not be stored under another ID.
+     *
+     * @param serverID ID of the message on the server
+     * @param message  message sent by the server
+     * @return true if the message is stored afterwards otherwise false
+     */
+    public boolean upsertMessage(int serverID, Message message)
     {
         return SQLHandler
-                .sql("INSERT INTO Messages (Origin, Destination, Message,Timestamp," +
-                                " MessageType) " +
-                                "VALUES (?, ?, ?, ?, ?); ",
-                        message.getOrigin(),
-                        message.getDestination(),
-                        message.getMessage(),
-                        message.getTimestamp(),
-                        message.getMessageType())
-                .execute(rs -> rs.next() ? rs.getLong(1) : -1L);
+                .sql(UPSERT_MESSAGE, row(serverID, message))
+                .execute();
+    }
+
+    /**
+     * Upserts several messages with one reused statement in a single transaction,
+     * see {@link #upsertMessage(int, Message)}.
+     *
+     * @param messages messages sent by the server by their server ID
+     * @return true if all messages are stored afterwards otherwise false
+     */
+    public boolean upsertMessages(Map<Integer, Message> messages)
+    {
+        List<Object[]> rows = new ArrayList<>(messages.size());
+
+        for (Map.Entry<Integer, Message> entry : messages.entrySet())
+        {
+            rows.add(row(entry.getKey(), entry.getValue()));
+        }
+
+        return SQLHandler
+                .sql(UPSERT_MESSAGE)
+                .executeBatch(rows);
+    }
+
+    /**
+     * Reads the message of the current row. The time is read as the stored
+     * epoch milliseconds, without a Timestamp object per row. The ID of the
+     * message is its server ID, 0 for messages stored without one, the row ID
+     * is its local ID.
+     */
+    private static Message readMessage(ResultSet rs) throws SQLException
+    {
+        long timestamp = rs.getLong("Timestamp");
+        if (rs.wasNull())
+        {
+            timestamp = Message.NO_TIME;
+        }
+
+        Message message = new Message(rs.getInt("ServerID"),
+                rs.getInt("Origin"),
+                rs.getInt("Destination"),
+                rs.getString("Message"),
+                timestamp,
+                rs.getInt("MessageType"));
+        message.setLocalId(rs.getInt("ID"));
+        return message;
+    }
+
+    /**
+     * @param serverID ID of the message on the server, values below 1 are stored as no server ID
+     * @return parameters of {@link #INSERT_MESSAGE} and {@link #UPSERT_MESSAGE}, messages without server ID are never skipped
+     */
+    private static Object[] row(int serverID, Message message)
+    {
+        return new Object[]{
+                serverID > 0 ? serverID : null,
+                message.getOrigin(),
+                message.getDestination(),
+                message.getMessage(),
+                message.hasTimestamp() ? message.getTimeMillis() : null,
+                message.getMessageType()};
     }
 
     /**
@@ -0,0 +1,43 @@
+package com.htwsaar.logic;
+
+import com.htwsaar.container.Message;
+
+/**
+ * Message waiting in the outbox for its confirmation by the server.
+ *
+ * @version 1.0
+ */
+public class OutboxEntry
+{
+    private final String clientID;
+    private final Message message;
+    private final int attempts;
+
+    public OutboxEntry(String clientID, Message message, int attempts)
+    {
+        this.clientID = clientID;
+        this.message = message;
+        this.attempts = attempts;
+    }
+
+    /**
+     * @return ID generated by the client, sent with the message as STOMP header
+     */
+    public String getClientID()
+    {
+        return clientID;
+    }
+
+    public Message getMessage()
+    {
+        return message;
+    }
+
+    /**
+     * @return number of times the message was sent so far
+     */
+    public int getAttempts()
+    {
+        return attempts;
+    }
+}
@@ -0,0 +1,119 @@
+package com.htwsaar.logic;
+
+import com.htwsaar.container.Message;
+import com.htwsaar.sql.SQLHandler;
+
+import java.util.ArrayList;
+import java.util.UUID;
+
+/**
+ * Provides methods to interact with the database table Outbox.
+ * A message stays in the outbox from the send until the server confirms
+ * it, so it survives a lost connection and a restart of the client.
+ *
+ * @version 1.0
+ */
+public class OutboxLogic
+{
+    public final static OutboxLogic INSTANCE = new OutboxLogic();
+
+    /**
+     * Private constructor (singleton pattern)
+     * called by OutboxLogic INSTANCE
+     */
+    private OutboxLogic()
+    {
+
+    }
+
+    /**
+     * Inserts a message at the end of the outbox.
+     *
+     * @param message message to be sent
+     * @return generated client ID of the entry, null if it could not be stored
+     */
+    public String enqueue(Message message)
+    {
+        String clientID = UUID.randomUUID().toString();
+
+        boolean stored = SQLHandler
+                .sql("INSERT INTO Outbox (ClientID, Origin, Destination, Message, Timestamp, MessageType) " +
+                                "VALUES (?, ?, ?, ?, ?, ?);",
+                        clientID,
+                        message.getOrigin(),
+                        message.getDestination(),
+                        message.getMessage(),
+                        message.getTimestamp(),
+                        message.getMessageType())
+                .execute();
+
+        return stored ? clientID : null;
+    }
+
+    /**
+     * Loads the oldest entries of the outbox in send order.
+     *
+     * @param limit maximal number of entries
+     * @return entries, null if the database could not be read
+     */
+    public ArrayList<OutboxEntry> selectPending(int limit)
+    {
+        ArrayList<OutboxEntry> tmp = new ArrayList<>();
+
+        return SQLHandler
+                .sql("SELECT * FROM Outbox ORDER BY ID LIMIT ?;", limit)
+                .executeQuery(rs ->
+                {
+                    while (rs.next())
+                    {
+                        tmp.add(new OutboxEntry(rs.getString("ClientID"),
+                                new Message(-1,
+                                        rs.getInt("Origin"),
+                                        rs.getInt("Destination"),
+                                        rs.getString("Message"),
+                                        rs.getTimestamp("Timestamp"),
+                                        rs.getInt("MessageType")),
+                                rs.getInt("Attempts")));
+                    }
+                    return tmp;
+                });
+    }
+
+    /**
+     * @return number of entries, -1 if the database could not be read
+     */
+    public int count()
+    {
+        Integer count = SQLHandler
+                .sql("SELECT COUNT(*) FROM Outbox;")
+                .executeQuery(rs -> rs.next() ? rs.getInt(1) : 0);
+
+        return count == null ? -1 : count;
+    }
+
+    /**
+     * Counts a send attempt of the entry.
+     *
+     * @param clientID client ID of the entry
+     * @return true if successful otherwise false
+     */
+    public boolean recordAttempt(String clientID)
+    {
+        return SQLHandler
+                .sql("UPDATE Outbox SET Attempts = Attempts + 1 WHERE ClientID = ?;", clientID)
+                .execute();
+    }
+
+    /**
+     * Removes a confirmed entry.
+     *
+     * @param clientID client ID of the entry
+     * @return true if successful otherwise false
+     */
+    public boolean delete(String clientID)
+    {
+        return SQLHandler
+                .sql("DELETE FROM Outbox WHERE ClientID = ?;", clientID)
+                .execute();
+    }
+}
@@ -0,0 +1,50 @@
+package com.htwsaar.logic;
+
+/**
+ * Position in the ranked results of a full-text search for keyset pagination.
+ * Hits are ordered by (score, local row ID), a cursor selects the page after such a position.
+ *
+ * @version 1.1
+ */
+public class SearchCursor
+{
+    /**
+     * Selects the best ranked page.
+     */
+    public static final SearchCursor FIRST = new SearchCursor(0, 0, true);
+
+    private final double score;
+    private final int id;
+    private final boolean first;
+
+    private SearchCursor(double score, int id, boolean first)
+    {
+        this.score = score;
+        this.id = id;
+        this.first = first;
+    }
+
+    /**
+     * @param hit last loaded hit
+     * @return cursor of the next page
+     */
+    public static SearchCursor after(SearchHit hit)
+    {
+        return new SearchCursor(hit.getScore(), hit.getMessage().getLocalId(), false);
+    }
+
+    public double getScore()
+    {
+        return score;
+    }
+
+    public int getId()
+    {
+        return id;
+    }
+
+    public boolean isFirst()
+    {
+        return first;
+    }
+}
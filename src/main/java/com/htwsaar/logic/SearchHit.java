@@ -0,0 +1,43 @@
+package com.htwsaar.logic;
+
+import com.htwsaar.container.Message;
+
+/**
+ * Message found by a full-text search, with the matching part of its text.
+ *
+ * @version 1.0
+ */
+public class SearchHit
+{
+    private final Message message;
+    private final String snippet;
+    private final double score;
+
+    public SearchHit(Message message, String snippet, double score)
+    {
+        this.message = message;
+        this.snippet = snippet;
+        this.score = score;
+    }
+
+    public Message getMessage()
+    {
+        return message;
+    }
+
+    /**
+     * @return excerpt of the text with the matched terms in square brackets
+     */
+    public String getSnippet()
+    {
+        return snippet;
+    }
+
+    /**
+     * @return bm25 score, lower is more relevant
+     */
+    public double getScore()
+    {
+        return score;
+    }
+}
@@ -0,0 +1,50 @@
+package com.htwsaar.logic;
+
+/**
+ * High-water mark of the messages an account has received and stored:
+ * the highest server message ID and the newest message time. It is sent
+ * with the receive request, so the server only has to deliver newer messages.
+ *
+ * @version 1.0
+ */
+public class SyncCursor
+{
+    /**
+     * Cursor of an account that has not received any message yet.
+     */
+    public static final SyncCursor NONE = new SyncCursor(0, 0);
+
+    private final int serverID;
+    private final long timestamp;
+
+    /**
+     * @param serverID  highest server ID of a stored message
+     * @param timestamp newest time of a stored message in milliseconds
+     */
+    public SyncCursor(int serverID, long timestamp)
+    {
+        this.serverID = serverID;
+        this.timestamp = timestamp;
+    }
+
+    public int getServerID()
+    {
+        return serverID;
+    }
+
+    public long getTimestamp()
+    {
+        return timestamp;
+    }
+
+    public boolean isNone()
+    {
+        return serverID == 0 && timestamp == 0;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "sync cursor: id=" + serverID + " timestamp=" + timestamp;
+    }
+}
@@ -0,0 +1,82 @@
+package com.htwsaar.logic;
+
+import com.htwsaar.container.Message;
+import com.htwsaar.sql.SQLHandler;
+
+import java.util.List;
+
+/**
+ * Provides methods to interact with the database table SyncState,
+ * it holds the {@link SyncCursor} of every account that logged in.
+ *
+ * @version 1.1
+ */
+public class SyncLogic
+{
+    public final static SyncLogic INSTANCE = new SyncLogic();
+
+    /**
+     * Creates the cursor of the account or moves it forward, never back
+     */
+    private static final String ADVANCE = "INSERT INTO SyncState (Account, LastServerID, LastTimestamp) " +
+            "VALUES (?, ?, ?) ON CONFLICT (Account) DO UPDATE SET " +
+            "LastServerID = MAX(LastServerID, excluded.LastServerID), " +
+            "LastTimestamp = MAX(LastTimestamp, excluded.LastTimestamp);";
+
+    /**
+     * Private constructor (singleton pattern)
+     * called by SyncLogic INSTANCE
+     */
+    private SyncLogic()
+    {
+
+    }
+
+    /**
+     * Loads the cursor of an account.
+     *
+     * @param account ID of the own user
+     * @return stored cursor, {@link SyncCursor#NONE} if there is none or the database could not be read
+     */
+    public SyncCursor selectCursor(int account)
+    {
+        SyncCursor cursor = SQLHandler
+                .sql("SELECT LastServerID, LastTimestamp FROM SyncState WHERE Account = ?;", account)
+                .executeQuery(rs -> !rs.next() ? SyncCursor.NONE :
+                        new SyncCursor(rs.getInt("LastServerID"), rs.getLong("LastTimestamp")));
+
+        return cursor == null ? SyncCursor.NONE : cursor;
+    }
+
+    /**
+     * Moves the cursor of an account past the stored messages in one statement.
+     * The cursor never moves back, so batches may be advanced in any order.
+     *
+     * @param account  ID of the own user
+     * @param messages messages that were stored
+     * @return true if successful otherwise false
+     */
+    public boolean advance(int account, List<Message> messages)
+    {
+        int serverID = 0;
+        long timestamp = 0;
+
+        for (Message message : messages)
+        {
+            serverID = Math.max(serverID, message.getId());
+            if (message.hasTimestamp())
+            {
+                timestamp = Math.max(timestamp, message.getTimeMillis());
+            }
+        }
+
+        if (serverID == 0 && timestamp == 0)
+        {
+            return true;
+        }
+
+        return SQLHandler
+                .sql(ADVANCE, account, serverID, timestamp)
+                .execute();
+    }
+}
@@ -6,17 +6,26 @@ import com.htwsaar.sql.SQLHandler;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Provides methods to interact with the database table User.
  *
  * @author Matthias Gessner
- * @version 1.2
+ * @version 1.4
  */
 public class UserLogic
 {
     public final static UserLogic INSTANCE = new UserLogic();
 
+    /**
+     * Inserts an user, a conflicting ID updates the name if it changed
+     */
+    private static final String UPSERT_USER = "INSERT INTO Users (ID, Name) VALUES (?, ?) " +
+            "ON CONFLICT (ID) DO UPDATE SET Name = excluded.Name WHERE Name IS NOT excluded.Name;";
+
+    private final IdentityCache<User> cache = new IdentityCache<>(User::getID, User::getName);
+
     /**
      * Private constructor (singleton pattern)
      * called by UserLogic INSTANCE
@@ -26,6 +35,23 @@ public class UserLogic
 
     }
 
+    /**
+     * Loads all rows of database table User into the cache.
+     * Called once after the database connection is established.
+     */
+    public void warmCache()
+    {
+        cache.load(loadAllUsers());
+    }
+
+    /**
+     * Empties the cache, following lookups read the database again.
+     */
+    public void clearCache()
+    {
+        cache.clear();
+    }
+
     /**
      * Loads User information from database table User in an user class object.
      *
@@ -35,6 +61,11 @@ public class UserLogic
      */
     public User selectUser(int ID)
     {
+        if (cache.isLoaded())
+        {
+            return cache.get(ID);
+        }
+
         return SQLHandler
                 .sql("SELECT ID, Name FROM Users WHERE ID = ?;", ID)
                 .executeQuery(rs ->
@@ -56,6 +87,11 @@ public class UserLogic
      */
     public User selectUser(String name)
     {
+        if (cache.isLoaded())
+        {
+            return cache.get(name);
+        }
+
         return SQLHandler
                 .sql("SELECT ID, Name FROM Users WHERE Name = ?;", name)
                 .executeQuery(rs ->
@@ -79,9 +115,15 @@ public class UserLogic
      */
     public boolean updateUser(int ID, String name) throws SQLException
     {
-        return SQLHandler
+        boolean updated = SQLHandler
                 .sql("UPDATE Users SET Name = ? WHERE ID = ?;", name, ID)
                 .execute();
+
+        if (updated && cache.get(ID) != null)
+        {
+            cache.put(new User(ID, name));
+        }
+        return updated;
     }
 
     /**
@@ -95,9 +137,15 @@ public class UserLogic
      */
     public boolean deleteUser(int ID) throws SQLException
     {
-        return SQLHandler
+        boolean deleted = SQLHandler
                 .sql("DELETE FROM Users WHERE ID = ?;", ID)
                 .execute();
+
+        if (deleted)
+        {
+            cache.remove(ID);
+        }
+        return deleted;
     }
 
     /**
@@ -110,23 +158,75 @@ public class UserLogic
      */
     public boolean deleteUser(String name) throws SQLException
     {
-        return SQLHandler
+        boolean deleted = SQLHandler
                 .sql("DELETE FROM Users WHERE name = ?;", name)
                 .execute();
+
+        if (deleted)
+        {
+            cache.remove(name);
+        }
+        return deleted;
     }
 
     /**
-     * Insert a new entry in database table User.
+     * Insert a new entry in database table User, an existing entry with
+     * the same ID is updated instead, see {@link #upsertUser(User)}.
      *
      * @param name Name of new User entry
-     * @return ID of inserted row if successful otherwise -1
+     * @return ID of the row if successful otherwise -1
      * @throws SQLException database connection lost, sql-Syntax-Error
      */
     public long insertUser(int ID, String name)
     {
-        return SQLHandler
-                .sql("INSERT INTO Users (ID, name) VALUES (?, ?);", ID, name)
-                .execute(rs -> rs.next() ? rs.getLong(1) : -1L);
+        return upsertUser(new User(ID, name)) ? ID : -1L;
+    }
+
+    /**
+     * Inserts an user or updates the name of the entry with the same ID.
+     * Storing an unchanged user again writes nothing and does not fail.
+     *
+     * @param user user sent by the server
+     * @return true if the user is stored afterwards otherwise false
+     */
+    public boolean upsertUser(User user)
+    {
+        boolean stored = SQLHandler
+                .sql(UPSERT_USER, user.getID(), user.getName())
+                .execute();
+
+        if (stored)
+        {
+            cache.put(user);
+        }
+        return stored;
+    }
+
+    /**
+     * Upserts several users with one reused statement in a single transaction,
+     * see {@link #upsertUser(User)}.
+     *
+     * @param users users sent by the server
+     * @return true if all users are stored afterwards otherwise false
+     */
+    public boolean upsertUsers(List<User> users)
+    {
+        List<Object[]> rows = new ArrayList<>(users.size());
+
+        for (User user : users)
+        {
+            rows.add(new Object[]{user.getID(), user.getName()});
+        }
+
+        boolean stored = SQLHandler
+                .sql(UPSERT_USER)
+                .executeBatch(rows);
+
+        if (stored)
+        {
+            users.forEach(cache::put);
+        }
+        return stored;
     }
 
     /**
@@ -136,6 +236,16 @@ public class UserLogic
      * @throws SQLException database connection lost, sql-Syntax-Error
      */
     public ArrayList<User> selectAllUsers()
+    {
+        if (cache.isLoaded())
+        {
+            return new ArrayList<>(cache.values());
+        }
+
+        return loadAllUsers();
+    }
+
+    private ArrayList<User> loadAllUsers()
     {
         ArrayList<User> tmp = new ArrayList<>();
         return SQLHandler
@@ -161,6 +271,11 @@ public class UserLogic
      */
     public boolean userExists(String name) throws SQLException
     {
+        if (cache.isLoaded())
+        {
+            return cache.get(name) != null;
+        }
+
         return SQLHandler
                 .sql("SELECT * FROM Users WHERE name = ?", name)
                 .executeQuery(rs -> rs.next());
@@ -0,0 +1,198 @@
+package com.htwsaar.server;
+
+import com.htwsaar.utils.Histogram;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Collects the IDs of received messages and confirms them to the server
+ * as one array frame. A batch is sent when it is full or when the time
+ * window after the first pending ID has passed. {@link #close()} sends
+ * everything that is still pending.
+ *
+ * @version 1.1
+ */
+public class AckBatcher
+{
+    public static final int DEFAULT_MAX_BATCH = 256;
+    public static final long DEFAULT_WINDOW_MILLIS = 50;
+
+    private final Consumer<int[]> sender;
+    private final int maxBatch;
+    private final long windowMillis;
+    private final ScheduledExecutorService scheduler;
+
+    private final Histogram latency = new Histogram("ack latency", "ms",
+            1, 2, 5, 10, 20, 50, 100, 200, 500, 1000);
+    private final Histogram batchSizes = new Histogram("ack batch size", "ids",
+            1, 2, 4, 8, 16, 32, 64, 128, 256, 512);
+
+    private int[] ids;
+    private long[] enqueued;
+    private int size;
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean closed;
+
+    public AckBatcher(Consumer<int[]> sender)
+    {
+        this(sender, DEFAULT_MAX_BATCH, DEFAULT_WINDOW_MILLIS);
+    }
+
+    /**
+     * @param sender       sends one array of message IDs to the server
+     * @param maxBatch     maximal number of IDs per frame
+     * @param windowMillis maximal time an ID waits before it is sent
+     */
+    public AckBatcher(Consumer<int[]> sender, int maxBatch, long windowMillis)
+    {
+        this.sender = sender;
+        this.maxBatch = maxBatch;
+        this.windowMillis = windowMillis;
+        this.ids = new int[maxBatch];
+        this.enqueued = new long[maxBatch];
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ack-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Adds a message ID to the current batch.
+     *
+     * @param messageID server ID of the received message
+     * @return false if the batcher is already closed
+     */
+    public boolean add(int messageID)
+    {
+        Pending full = null;
+
+        synchronized (this)
+        {
+            if (closed)
+            {
+                return false;
+            }
+
+            ids[size] = messageID;
+            enqueued[size] = System.nanoTime();
+            size++;
+
+            //taken under the same lock, so no other thread can append to the full arrays
+            if (size >= maxBatch)
+            {
+                full = take();
+            }
+            else if (scheduledFlush == null)
+            {
+                scheduledFlush = scheduler.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (full != null)
+        {
+            send(full);
+        }
+        return true;
+    }
+
+    /**
+     * Sends all pending IDs as one frame.
+     */
+    public void flush()
+    {
+        Pending pending;
+
+        synchronized (this)
+        {
+            pending = take();
+        }
+
+        if (pending != null)
+        {
+            send(pending);
+        }
+    }
+
+    /**
+     * Removes the pending IDs from the batch, the caller must hold the lock.
+     *
+     * @return pending IDs, null if there are none
+     */
+    private Pending take()
+    {
+        if (scheduledFlush != null)
+        {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+
+        if (size == 0)
+        {
+            return null;
+        }
+
+        Pending pending = new Pending(Arrays.copyOf(ids, size), Arrays.copyOf(enqueued, size));
+        size = 0;
+        return pending;
+    }
+
+    private void send(Pending pending)
+    {
+        sender.accept(pending.ids);
+
+        long now = System.nanoTime();
+        for (long time : pending.enqueued)
+        {
+            latency.record(TimeUnit.NANOSECONDS.toMillis(now - time));
+        }
+        batchSizes.record(pending.ids.length);
+    }
+
+    /**
+     * Sends all pending IDs and stops the batcher. Later calls of {@link #add(int)} are ignored.
+     */
+    public void close()
+    {
+        synchronized (this)
+        {
+            closed = true;
+        }
+
+        flush();
+        scheduler.shutdown();
+
+        ServerConnection.logger.info(latency.toString());
+        ServerConnection.logger.info(batchSizes.toString());
+    }
+
+    public Histogram getLatency()
+    {
+        return latency;
+    }
+
+    public Histogram getBatchSizes()
+    {
+        return batchSizes;
+    }
+
+    /**
+     * IDs taken from the batch with the times they were added
+     */
+    private static class Pending
+    {
+        private final int[] ids;
+        private final long[] enqueued;
+
+        private Pending(int[] ids, long[] enqueued)
+        {
+            this.ids = ids;
+            this.enqueued = enqueued;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.htwsaar.server;
+
+import com.htwsaar.server.codec.MessageStreamDecoder;
+import com.htwsaar.utils.Resources;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * STOMP and websocket settings (heartbeats, buffer sizes, timeouts, codec, chunking)
+ * read from connection.properties. A {@code stomp.*} or {@code websocket.*}
+ * system property overrides the value of the file, also for keys the file
+ * does not contain.
+ *
+ * @version 1.2
+ */
+public class ConnectionProfile
+{
+    private static final Logger logger = Logger.getLogger(ConnectionProfile.class.getName());
+    private static final String FILE = "connection.properties";
+
+    private final Properties properties;
+
+    private ConnectionProfile(Properties properties)
+    {
+        this.properties = properties;
+    }
+
+    /**
+     * Loads the profile from connection.properties. Missing
+     * values fall back to the defaults of the getters.
+     *
+     * @return loaded profile
+     */
+    public static ConnectionProfile load()
+    {
+        Properties properties = Resources.loadProfile(FILE, "stomp.", "websocket.");
+        return new ConnectionProfile(properties);
+    }
+
+    /**
+     * @return send and receive interval in milliseconds as expected by STOMP
+     */
+    public long[] getHeartbeat()
+    {
+        return new long[]{getLong("stomp.heartbeat.send", 10_000), getLong("stomp.heartbeat.receive", 10_000)};
+    }
+
+    public int getInboundMessageSizeLimit()
+    {
+        return (int) getLong("stomp.inbound_message_size_limit", 64 * 1024);
+    }
+
+    public int getTextBufferSize()
+    {
+        return (int) getLong("websocket.text_buffer_size", 8 * 1024);
+    }
+
+    public int getBinaryBufferSize()
+    {
+        return (int) getLong("websocket.binary_buffer_size", 8 * 1024);
+    }
+
+    /**
+     * @return true if the binary codec is offered to the server, JSON is used otherwise
+     */
+    public boolean isBinaryCodec()
+    {
+        return "binary".equalsIgnoreCase(properties.getProperty("stomp.codec", "json").trim());
+    }
+
+    /**
+     * @return maximal number of messages of a received frame that are stored together
+     */
+    public int getSyncChunkSize()
+    {
+        return (int) Math.max(1, getLong("stomp.sync_chunk_size", MessageStreamDecoder.DEFAULT_CHUNK_SIZE));
+    }
+
+    public long getConnectTimeoutSeconds()
+    {
+        return getLong("stomp.connect_timeout", 10);
+    }
+
+    private long getLong(String key, long defaultValue)
+    {
+        try
+        {
+            return Long.parseLong(properties.getProperty(key, String.valueOf(defaultValue)).trim());
+        } catch (NumberFormatException e)
+        {
+            logger.warning("Invalid value of " + key + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        long[] heartbeat = getHeartbeat();
+        return "connection profile: heartbeat=" + heartbeat[0] + "," + heartbeat[1] +
+                " inbound_limit=" + getInboundMessageSizeLimit() +
+                " text_buffer=" + getTextBufferSize() +
+                " binary_buffer=" + getBinaryBufferSize() +
+                " codec=" + (isBinaryCodec() ? "binary" : "json") +
+                " sync_chunk=" + getSyncChunkSize();
+    }
+}
@@ -0,0 +1,351 @@
+package com.htwsaar.server;
+
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Keeps a STOMP session alive. A lost session is reestablished with
+ * jittered exponential backoff, afterwards all registered subscriptions
+ * are subscribed again and the reconnect callback is run. Connects, outages
+ * and received frames are recorded in the {@link Liveness} metrics.
+ * <p>
+ * The first connection attempt is not retried, so wrong credentials
+ * are reported to the caller of {@link #start()}.
+ *
+ * @version 1.2
+ */
+public class ConnectionSupervisor
+{
+    private static final Logger logger = Logger.getLogger(ConnectionSupervisor.class.getName());
+
+    public static final long DEFAULT_INITIAL_DELAY_MILLIS = 500;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 30_000;
+
+    public enum State
+    {
+        DISCONNECTED, CONNECTING, CONNECTED, RECONNECTING, CLOSED
+    }
+
+    /**
+     * Opens a new session
+     */
+    @FunctionalInterface
+    public interface Connector
+    {
+        StompSession connect() throws Exception;
+    }
+
+    private final Connector connector;
+    private final Consumer<StompSession> onReconnected;
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+    private final ScheduledExecutorService scheduler;
+    private final Liveness liveness;
+
+    private final List<Consumer<State>> listeners = new CopyOnWriteArrayList<>();
+    private final List<Subscription> subscriptions = new ArrayList<>();
+
+    private volatile State state = State.DISCONNECTED;
+    private volatile StompSession session;
+    private int attempt;
+    private ScheduledFuture<?> retry;
+
+    public ConnectionSupervisor(Connector connector, Consumer<StompSession> onReconnected)
+    {
+        this(connector, onReconnected, new Liveness());
+    }
+
+    public ConnectionSupervisor(Connector connector, Consumer<StompSession> onReconnected, Liveness liveness)
+    {
+        this(connector, onReconnected, liveness, DEFAULT_INITIAL_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    /**
+     * @param connector          opens a new session
+     * @param onReconnected      called with the new session after the subscriptions were restored
+     * @param liveness           metrics the connects and outages are recorded in
+     * @param initialDelayMillis delay before the first reconnect attempt
+     * @param maxDelayMillis     upper bound of the delay between two attempts
+     */
+    public ConnectionSupervisor(Connector connector, Consumer<StompSession> onReconnected, Liveness liveness,
+                                long initialDelayMillis, long maxDelayMillis)
+    {
+        this.connector = connector;
+        this.onReconnected = onReconnected;
+        this.liveness = liveness;
+        this.initialDelayMillis = initialDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stomp-reconnect");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Opens the first session.
+     *
+     * @return connected session
+     * @throws Exception if the connection could not be established
+     */
+    public synchronized StompSession start() throws Exception
+    {
+        setState(State.CONNECTING);
+
+        long start = System.nanoTime();
+        try
+        {
+            session = connector.connect();
+        } catch (Exception e)
+        {
+            setState(State.DISCONNECTED);
+            throw e;
+        }
+        liveness.connected((System.nanoTime() - start) / 1_000_000);
+
+        setState(State.CONNECTED);
+        return session;
+    }
+
+    /**
+     * Reports a lost session, for example after a transport error or missed heartbeats.
+     * Reports of sessions that were already replaced are ignored.
+     *
+     * @param lost  session that was lost
+     * @param cause reason, may be null
+     */
+    public synchronized void connectionLost(StompSession lost, Throwable cause)
+    {
+        if (lost != session || state != State.CONNECTED)
+        {
+            return;
+        }
+
+        logger.warning("Connection lost: " + cause);
+        liveness.lost();
+        attempt = 0;
+        setState(State.RECONNECTING);
+        scheduleAttempt();
+    }
+
+    private void scheduleAttempt()
+    {
+        long delay = backoff(attempt);
+        logger.info("Reconnect attempt " + (attempt + 1) + " in " + delay + " ms");
+        retry = scheduler.schedule(this::reconnect, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Exponential backoff with equal jitter: half of the delay is fixed,
+     * the other half random, so clients do not reconnect in lockstep.
+     *
+     * @param attempt number of failed attempts
+     * @return delay in milliseconds
+     */
+    long backoff(int attempt)
+    {
+        long delay = Math.min(maxDelayMillis, initialDelayMillis << Math.min(attempt, 20));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    /**
+     * Runs on the reconnect thread. The connect itself runs without the lock,
+     * so {@link #close()} does not wait for a connect timeout; the state is
+     * checked again before the new session is installed.
+     */
+    private void reconnect()
+    {
+        synchronized (this)
+        {
+            if (state != State.RECONNECTING)
+            {
+                return;
+            }
+        }
+
+        StompSession reconnected;
+        long start = System.nanoTime();
+        try
+        {
+            reconnected = connector.connect();
+        } catch (Exception e)
+        {
+            synchronized (this)
+            {
+                if (state == State.RECONNECTING)
+                {
+                    logger.info("Reconnect failed: " + e.getMessage());
+                    attempt++;
+                    scheduleAttempt();
+                }
+            }
+            return;
+        }
+
+        synchronized (this)
+        {
+            if (state != State.RECONNECTING)
+            {
+                //closed while connecting
+                if (reconnected.isConnected())
+                {
+                    reconnected.disconnect();
+                }
+                return;
+            }
+
+            session = reconnected;
+            liveness.connected((System.nanoTime() - start) / 1_000_000);
+            for (Subscription subscription : subscriptions)
+            {
+                subscription.subscribe(reconnected);
+            }
+
+            setState(State.CONNECTED);
+            logger.info("Reconnected after " + (attempt + 1) + " attempts, " + liveness);
+            onReconnected.accept(reconnected);
+        }
+    }
+
+    /**
+     * Subscribes the destination now and again after every reconnect.
+     *
+     * @param destination    server URL
+     * @param handler        handles the received frames
+     * @param afterSubscribe run after every subscribe, for example to request pending data; may be null
+     */
+    public synchronized void subscribe(String destination, StompFrameHandler handler, Consumer<StompSession> afterSubscribe)
+    {
+        Subscription subscription = new Subscription(destination, new StompFrameHandler()
+        {
+            @Override
+            public Type getPayloadType(StompHeaders headers)
+            {
+                return handler.getPayloadType(headers);
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload)
+            {
+                liveness.frameReceived();
+                handler.handleFrame(headers, payload);
+            }
+        }, afterSubscribe);
+        subscriptions.add(subscription);
+
+        if (state == State.CONNECTED)
+        {
+            subscription.subscribe(session);
+        }
+    }
+
+    /**
+     * @return current session, it may be disconnected
+     */
+    public StompSession getSession()
+    {
+        return session;
+    }
+
+    public Liveness getLiveness()
+    {
+        return liveness;
+    }
+
+    public State getState()
+    {
+        return state;
+    }
+
+    public boolean isConnected()
+    {
+        StompSession current = session;
+        return state == State.CONNECTED && current != null && current.isConnected();
+    }
+
+    public void addListener(Consumer<State> listener)
+    {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<State> listener)
+    {
+        listeners.remove(listener);
+    }
+
+    private void setState(State state)
+    {
+        if (this.state == state)
+        {
+            return;
+        }
+
+        this.state = state;
+        for (Consumer<State> listener : listeners)
+        {
+            listener.accept(state);
+        }
+    }
+
+    /**
+     * Stops reconnecting and disconnects the session.
+     */
+    public synchronized void close()
+    {
+        setState(State.CLOSED);
+
+        if (retry != null)
+        {
+            retry.cancel(false);
+        }
+        scheduler.shutdownNow();
+        subscriptions.clear();
+
+        StompSession current = session;
+        if (current != null && current.isConnected())
+        {
+            current.disconnect();
+        }
+        listeners.clear();
+    }
+
+    /**
+     * Subscription that is restored after a reconnect
+     */
+    private static class Subscription
+    {
+        private final String destination;
+        private final StompFrameHandler handler;
+        private final Consumer<StompSession> afterSubscribe;
+
+        private Subscription(String destination, StompFrameHandler handler, Consumer<StompSession> afterSubscribe)
+        {
+            this.destination = destination;
+            this.handler = handler;
+            this.afterSubscribe = afterSubscribe;
+        }
+
+        private void subscribe(StompSession session)
+        {
+            session.subscribe(destination, handler);
+
+            if (afterSubscribe != null)
+            {
+                afterSubscribe.accept(session);
+            }
+        }
+    }
+}
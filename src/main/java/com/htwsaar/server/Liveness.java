@@ -0,0 +1,112 @@
+package com.htwsaar.server;
+
+import com.htwsaar.utils.Histogram;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Liveness metrics of the server connection over all sessions of a run:
+ * connect latency, number and duration of outages and the time since
+ * the last frame was received.
+ *
+ * @version 1.0
+ */
+public class Liveness
+{
+    private final AtomicLong connects = new AtomicLong();
+    private final AtomicLong losses = new AtomicLong();
+
+    private final Histogram connectLatency = new Histogram("connect latency", "ms",
+            10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000);
+    private final Histogram outages = new Histogram("outage", "ms",
+            100, 500, 1000, 2500, 5000, 10000, 30000, 60000, 300000);
+
+    private volatile long connectedAt;
+    private volatile long lostAt;
+    private volatile long lastFrameAt;
+
+    /**
+     * Records an established session.
+     *
+     * @param latencyMillis duration of the connection attempt
+     */
+    public void connected(long latencyMillis)
+    {
+        long now = System.currentTimeMillis();
+
+        connects.incrementAndGet();
+        connectLatency.record(latencyMillis);
+
+        if (lostAt != 0)
+        {
+            outages.record(now - lostAt);
+            lostAt = 0;
+        }
+        connectedAt = now;
+        lastFrameAt = now;
+    }
+
+    /**
+     * Records a lost session.
+     */
+    public void lost()
+    {
+        losses.incrementAndGet();
+        lostAt = System.currentTimeMillis();
+        connectedAt = 0;
+    }
+
+    /**
+     * Records a received frame.
+     */
+    public void frameReceived()
+    {
+        lastFrameAt = System.currentTimeMillis();
+    }
+
+    public long getConnects()
+    {
+        return connects.get();
+    }
+
+    public long getLosses()
+    {
+        return losses.get();
+    }
+
+    /**
+     * @return milliseconds since the last received frame, -1 if nothing was received yet
+     */
+    public long getMillisSinceLastFrame()
+    {
+        long last = lastFrameAt;
+        return last == 0 ? -1 : System.currentTimeMillis() - last;
+    }
+
+    /**
+     * @return milliseconds the current session is connected, 0 if it is not connected
+     */
+    public long getUptimeMillis()
+    {
+        long since = connectedAt;
+        return since == 0 ? 0 : System.currentTimeMillis() - since;
+    }
+
+    public Histogram getConnectLatency()
+    {
+        return connectLatency;
+    }
+
+    public Histogram getOutages()
+    {
+        return outages;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "liveness: connects=" + getConnects() + " losses=" + getLosses() +
+                " uptime=" + getUptimeMillis() + "ms last_frame=" + getMillisSinceLastFrame() + "ms; " +
+                connectLatency + "; " + outages;
+    }
+}
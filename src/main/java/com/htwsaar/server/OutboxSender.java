@@ -0,0 +1,281 @@
+package com.htwsaar.server;
+
+import com.htwsaar.container.Message;
+import com.htwsaar.logic.OutboxEntry;
+import com.htwsaar.logic.OutboxLogic;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Drains the outbox to the server. Entries are sent in outbox order with
+ * at most {@code maxInFlight} unconfirmed frames, an entry that is not
+ * confirmed in time or was in flight during a reconnect is sent again.
+ * The entry is removed from the outbox when its confirmation arrives,
+ * so every message is delivered at least once.
+ *
+ * @version 1.0
+ */
+public class OutboxSender
+{
+    private static final Logger logger = Logger.getLogger(OutboxSender.class.getName());
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 32;
+    public static final long DEFAULT_RETRY_MILLIS = 15_000;
+    private static final long IDLE_MILLIS = 1_000;
+
+    /**
+     * Sends one frame to the server
+     */
+    @FunctionalInterface
+    public interface Transport
+    {
+        /**
+         * @return true if the frame was sent, false if there is no connection
+         */
+        boolean send(String clientID, Message message);
+    }
+
+    private final Transport transport;
+    private final int maxInFlight;
+    private final long retryMillis;
+
+    /**
+     * Sent entries by client ID, guarded by this
+     */
+    private final Map<String, InFlight> inFlight = new LinkedHashMap<>();
+    private final Queue<String> confirmations = new ConcurrentLinkedQueue<>();
+
+    private final Object signal = new Object();
+    private boolean signalled;
+    private volatile boolean running = true;
+    private final Thread worker;
+
+    public OutboxSender(Transport transport)
+    {
+        this(transport, DEFAULT_MAX_IN_FLIGHT, DEFAULT_RETRY_MILLIS);
+    }
+
+    /**
+     * @param transport   sends the frames
+     * @param maxInFlight maximal number of sent but unconfirmed entries
+     * @param retryMillis time after that an unconfirmed entry is sent again
+     */
+    public OutboxSender(Transport transport, int maxInFlight, long retryMillis)
+    {
+        this.transport = transport;
+        this.maxInFlight = maxInFlight;
+        this.retryMillis = retryMillis;
+        this.worker = new Thread(this::run, "outbox-sender");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Wakes the worker, e.g. after a new entry was added to the outbox.
+     */
+    public void wake()
+    {
+        synchronized (signal)
+        {
+            signalled = true;
+            signal.notifyAll();
+        }
+    }
+
+    /**
+     * Removes the entry with the client ID from the outbox.
+     */
+    public void confirmed(String clientID)
+    {
+        synchronized (this)
+        {
+            inFlight.remove(clientID);
+        }
+        confirmations.add(clientID);
+        wake();
+    }
+
+    /**
+     * Confirms the oldest sent entry with the same content, for confirmations
+     * without client ID header.
+     *
+     * @return true if a sent entry matched
+     */
+    public boolean confirmed(Message confirmation)
+    {
+        String clientID = null;
+
+        synchronized (this)
+        {
+            for (Map.Entry<String, InFlight> entry : inFlight.entrySet())
+            {
+                Message sent = entry.getValue().message;
+
+                if (sent.getOrigin() == confirmation.getOrigin()
+                        && sent.getDestination() == confirmation.getDestination()
+                        && sent.getMessageType() == confirmation.getMessageType()
+                        && Objects.equals(sent.getMessage(), confirmation.getMessage()))
+                {
+                    clientID = entry.getKey();
+                    break;
+                }
+            }
+        }
+
+        if (clientID == null)
+        {
+            return false;
+        }
+        confirmed(clientID);
+        return true;
+    }
+
+    /**
+     * Sends all unconfirmed entries again, called after a reconnect.
+     */
+    public void resendAll()
+    {
+        synchronized (this)
+        {
+            inFlight.clear();
+        }
+        wake();
+    }
+
+    /**
+     * @return number of sent but unconfirmed entries
+     */
+    public synchronized int getInFlight()
+    {
+        return inFlight.size();
+    }
+
+    /**
+     * Stops the worker. Unconfirmed entries stay in the outbox for the next session.
+     */
+    public void close()
+    {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void run()
+    {
+        while (running)
+        {
+            try
+            {
+                drain();
+            } catch (RuntimeException e)
+            {
+                logger.log(Level.WARNING, "Outbox could not be drained", e);
+            }
+
+            synchronized (signal)
+            {
+                try
+                {
+                    if (!signalled)
+                    {
+                        signal.wait(IDLE_MILLIS);
+                    }
+                } catch (InterruptedException e)
+                {
+                    return;
+                }
+                signalled = false;
+            }
+        }
+    }
+
+    private void drain()
+    {
+        String confirmed;
+        while ((confirmed = confirmations.poll()) != null)
+        {
+            OutboxLogic.INSTANCE.delete(confirmed);
+        }
+
+        expire();
+
+        int free;
+        synchronized (this)
+        {
+            free = maxInFlight - inFlight.size();
+        }
+        if (free <= 0)
+        {
+            return;
+        }
+
+        //entries in flight are at the head of the outbox, load enough to skip them
+        List<OutboxEntry> pending = OutboxLogic.INSTANCE.selectPending(maxInFlight + free);
+        if (pending == null)
+        {
+            return;
+        }
+
+        for (OutboxEntry entry : pending)
+        {
+            synchronized (this)
+            {
+                if (inFlight.size() >= maxInFlight)
+                {
+                    return;
+                }
+                if (inFlight.containsKey(entry.getClientID()) || confirmations.contains(entry.getClientID()))
+                {
+                    continue;
+                }
+                inFlight.put(entry.getClientID(), new InFlight(entry.getMessage(), System.currentTimeMillis()));
+            }
+
+            if (!transport.send(entry.getClientID(), entry.getMessage()))
+            {
+                synchronized (this)
+                {
+                    inFlight.remove(entry.getClientID());
+                }
+                return;
+            }
+            OutboxLogic.INSTANCE.recordAttempt(entry.getClientID());
+        }
+    }
+
+    /**
+     * Releases entries that were not confirmed in time, they are sent again.
+     */
+    private synchronized void expire()
+    {
+        long deadline = System.currentTimeMillis() - retryMillis;
+
+        Iterator<InFlight> iterator = inFlight.values().iterator();
+        while (iterator.hasNext())
+        {
+            if (iterator.next().sentAt < deadline)
+            {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static class InFlight
+    {
+        private final Message message;
+        private final long sentAt;
+
+        private InFlight(Message message, long sentAt)
+        {
+            this.message = message;
+            this.sentAt = sentAt;
+        }
+    }
+}
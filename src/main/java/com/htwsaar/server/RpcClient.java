@@ -0,0 +1,214 @@
+package com.htwsaar.server;
+
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Request/response calls on top of a STOMP session.
+ * <p>
+ * The server answers a lookup once on the subscription of the requested
+ * destination (subscribe mapping). Every call therefore subscribes with its
+ * correlation ID as subscription ID, completes its future with the first
+ * reply and unsubscribes again, so no subscription outlives its call.
+ * Calls time out, can be cancelled through their future and the number
+ * of calls in flight is bounded.
+ *
+ * @version 1.0
+ */
+public class RpcClient
+{
+    public static final long DEFAULT_TIMEOUT_MILLIS = 10_000;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 256;
+
+    private static final String CORRELATION_HEADER = "correlation-id";
+
+    private final StompSession session;
+    private final long timeoutMillis;
+    private final Semaphore permits;
+    private final ConcurrentHashMap<String, Call> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong nextID = new AtomicLong();
+    private final ScheduledExecutorService scheduler;
+
+    public RpcClient(StompSession session)
+    {
+        this(session, DEFAULT_TIMEOUT_MILLIS, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * @param session       connected STOMP session
+     * @param timeoutMillis time after that an unanswered call fails with a {@link TimeoutException}
+     * @param maxInFlight   maximal number of unanswered calls
+     */
+    public RpcClient(StompSession session, long timeoutMillis, int maxInFlight)
+    {
+        this.session = session;
+        this.timeoutMillis = timeoutMillis;
+        this.permits = new Semaphore(maxInFlight);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rpc-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Requests the destination and waits for the first reply.
+     *
+     * @param destination requested server URL
+     * @param type        payload type of the reply
+     * @param <T>         payload type of the reply
+     * @return future of the reply. Fails with a {@link TimeoutException} if there is no reply in time
+     * or with a {@link RejectedExecutionException} if too many calls are in flight.
+     */
+    public <T> CompletableFuture<T> call(String destination, Class<T> type)
+    {
+        CompletableFuture<T> future = new CompletableFuture<>();
+
+        if (!permits.tryAcquire())
+        {
+            future.completeExceptionally(new RejectedExecutionException("Too many requests in flight: " + destination));
+            return future;
+        }
+
+        String correlationID = "rpc-" + nextID.incrementAndGet();
+        Call call = new Call(future);
+        inFlight.put(correlationID, call);
+        future.whenComplete((result, error) -> finish(correlationID));
+
+        StompHeaders headers = new StompHeaders();
+        headers.setDestination(destination);
+        headers.setId(correlationID);
+        headers.set(CORRELATION_HEADER, correlationID);
+
+        try
+        {
+            synchronized (session)
+            {
+                call.subscription = session.subscribe(headers, new StompFrameHandler()
+                {
+                    @Override
+                    public Type getPayloadType(StompHeaders headers)
+                    {
+                        return type;
+                    }
+
+                    @Override
+                    public void handleFrame(StompHeaders headers, Object payload)
+                    {
+                        future.complete(type.cast(payload));
+                    }
+                });
+            }
+        } catch (RuntimeException e)
+        {
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        //the reply may have arrived before the subscription was stored
+        if (future.isDone())
+        {
+            call.unsubscribe(session);
+        }
+        else
+        {
+            call.timeout = scheduler.schedule(
+                    () -> future.completeExceptionally(new TimeoutException("No reply from " + destination)),
+                    timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        return future;
+    }
+
+    /**
+     * @return number of calls waiting for a reply
+     */
+    public int getInFlight()
+    {
+        return inFlight.size();
+    }
+
+    /**
+     * Cancels all calls in flight and stops the timeout scheduler.
+     */
+    public void close()
+    {
+        for (Call call : new ArrayList<>(inFlight.values()))
+        {
+            call.cancel();
+        }
+        scheduler.shutdownNow();
+    }
+
+    private void finish(String correlationID)
+    {
+        Call call = inFlight.remove(correlationID);
+
+        if (call != null)
+        {
+            call.unsubscribe(session);
+
+            if (call.timeout != null)
+            {
+                call.timeout.cancel(false);
+            }
+            permits.release();
+        }
+    }
+
+    /**
+     * Subscription state of one call
+     */
+    private static class Call
+    {
+        private final CompletableFuture<?> future;
+        private final AtomicBoolean unsubscribed = new AtomicBoolean();
+        private volatile StompSession.Subscription subscription;
+        private volatile ScheduledFuture<?> timeout;
+
+        private Call(CompletableFuture<?> future)
+        {
+            this.future = future;
+        }
+
+        private void unsubscribe(StompSession session)
+        {
+            StompSession.Subscription current = subscription;
+
+            if (current != null && session.isConnected() && unsubscribed.compareAndSet(false, true))
+            {
+                try
+                {
+                    synchronized (session)
+                    {
+                        current.unsubscribe();
+                    }
+                } catch (RuntimeException e)
+                {
+                    ServerConnection.logger.fine("Unsubscribe failed: " + e.getMessage());
+                }
+            }
+        }
+
+        private void cancel()
+        {
+            future.completeExceptionally(new CancellationException("Connection closed"));
+        }
+    }
+}
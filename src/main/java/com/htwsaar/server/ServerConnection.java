@@ -3,13 +3,17 @@ package com.htwsaar.server;
 import com.htwsaar.container.Group;
 import com.htwsaar.container.Message;
 import com.htwsaar.container.User;
+import com.htwsaar.logic.OutboxLogic;
+import com.htwsaar.logic.SyncCursor;
+import com.htwsaar.server.codec.BinaryMessageConverter;
+import com.htwsaar.server.codec.MessageStreamDecoder;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
-import org.springframework.messaging.converter.MappingJackson2MessageConverter;
 import org.springframework.messaging.simp.stomp.StompFrameHandler;
 import org.springframework.messaging.simp.stomp.StompHeaders;
 import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.socket.WebSocketHttpHeaders;
 import org.springframework.web.socket.client.standard.StandardWebSocketClient;
@@ -18,28 +22,77 @@ import org.springframework.web.socket.sockjs.client.SockJsClient;
 import org.springframework.web.socket.sockjs.client.Transport;
 import org.springframework.web.socket.sockjs.client.WebSocketTransport;
 
+import javax.websocket.ContainerProvider;
+import javax.websocket.WebSocketContainer;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 /**
  * Handles websocket server connection over STOMP Protokoll
- * and provides methods to interact with the server
+ * and provides methods to interact with the server.
+ * <p>
+ * The session is supervised by a {@link ConnectionSupervisor}: a lost connection
+ * is reestablished automatically and the subscriptions are restored.
+ * Sent messages go through the outbox, see {@link OutboxSender}.
  *
  * @author Matthias Gessner
- * @version 1.4
+ * @version 1.10
  */
 public class ServerConnection
 {
     public static Logger logger = Logger.getLogger(ServerConnection.class.getName());
     public static String HOST = "ws://localhost:8080/chat";
+    private static final long UNKNOWN_NAME_TTL_MILLIS = 30_000;
+    private static final String CLIENT_ID_HEADER = "client-id";
 
-    private StompSession session;
+    /**
+     * Offered by the CONNECT frame and confirmed by the CONNECTED frame
+     * if the server accepts binary frames
+     */
+    private static final String CODEC_HEADER = "wave-codec";
+    private static final String BINARY_CODEC = "binary";
+
+    /**
+     * Sync cursor of the receive request, the server delivers only messages after it
+     */
+    private static final String SYNC_ID_HEADER = "sync-after-id";
+    private static final String SYNC_TIMESTAMP_HEADER = "sync-after-timestamp";
+
+    private volatile StompSession session;
+    private ConnectionSupervisor supervisor;
+    private final ConnectionProfile profile = ConnectionProfile.load();
+    private final Liveness liveness = new Liveness();
+
+    /**
+     * Created with the first login and reused by all sessions of the run
+     */
     private WebSocketStompClient stompClient;
+    private ThreadPoolTaskScheduler scheduler;
     private StompSessionHandler sessionHandler;
+    private AckBatcher acks;
+    private volatile RpcClient rpc;
+
+    /**
+     * True if the server of the current session accepts binary frames
+     */
+    private volatile boolean binary;
+
+    private OutboxSender outbox;
+    private volatile Supplier<SyncCursor> syncCursor = () -> SyncCursor.NONE;
+    private final List<Consumer<ConnectionSupervisor.State>> stateListeners = new CopyOnWriteArrayList<>();
+
+    private final SingleFlight<Integer, User> usersByID = new SingleFlight<>();
+    private final SingleFlight<String, User> usersByName = new SingleFlight<>(UNKNOWN_NAME_TTL_MILLIS);
+    private final SingleFlight<Integer, Group> groupsByID = new SingleFlight<>();
+    private final SingleFlight<String, Group> groupsByName = new SingleFlight<>(UNKNOWN_NAME_TTL_MILLIS);
 
     public static ServerConnection INSTANCE = new ServerConnection();
 
@@ -60,11 +113,36 @@ public class ServerConnection
 
     public void close()
     {
-        if (session != null)
+        if (acks != null)
+        {
+            acks.close();
+            acks = null;
+        }
+
+        if (rpc != null)
+        {
+            rpc.close();
+            rpc = null;
+        }
+
+        if (supervisor != null)
         {
-            session.disconnect();
-            session = null;
+            supervisor.close();
+            supervisor = null;
         }
+        session = null;
+        logger.info(liveness.toString());
+
+        if (outbox != null)
+        {
+            outbox.close();
+            outbox = null;
+        }
+
+        usersByID.clear();
+        usersByName.clear();
+        groupsByID.clear();
+        groupsByName.clear();
     }
 
     /**
@@ -79,45 +157,180 @@ public class ServerConnection
     }
 
     /**
-     * Closes the current session and tries to reconnect to the server
-     *
-     * @throws ExecutionException
-     * @throws InterruptedException
+     * Reconnects to the server if the current session is no longer connected.
      */
-    public void reconnect() throws ExecutionException, InterruptedException
+    public void reconnect()
     {
-        if (!session.isConnected())
+        ConnectionSupervisor current = supervisor;
+
+        if (current != null && !current.isConnected())
         {
-            session.disconnect();
-            stompClient.stop();
+            current.connectionLost(current.getSession(), null);
         }
     }
 
+    /**
+     * Registers a listener for the state of the connection. Listeners
+     * are kept over logout and login and are called on network threads.
+     */
+    public void addStateListener(Consumer<ConnectionSupervisor.State> listener)
+    {
+        stateListeners.add(listener);
+    }
+
+    public void removeStateListener(Consumer<ConnectionSupervisor.State> listener)
+    {
+        stateListeners.remove(listener);
+    }
+
+    /**
+     * @return true if the session is connected
+     */
+    public boolean isConnected()
+    {
+        ConnectionSupervisor current = supervisor;
+        return current != null && current.isConnected();
+    }
+
+    /**
+     * Creates the STOMP client on first use. The websocket client, the SockJS
+     * transport and the heartbeat scheduler are shared by all sessions.
+     */
+    private synchronized WebSocketStompClient getStompClient()
+    {
+        if (stompClient == null)
+        {
+            WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+            container.setDefaultMaxTextMessageBufferSize(profile.getTextBufferSize());
+            container.setDefaultMaxBinaryMessageBufferSize(profile.getBinaryBufferSize());
+
+            List<Transport> transports = new ArrayList<>(1);
+            transports.add(
+                    new WebSocketTransport(
+                            new StandardWebSocketClient(container)));
+
+            SockJsClient sockJsClient = new SockJsClient(transports);
+            WebSocketStompClient client = new WebSocketStompClient(sockJsClient);
+
+            client.setMessageConverter(BinaryMessageConverter.withJsonFallback());
+            client.setInboundMessageSizeLimit(profile.getInboundMessageSizeLimit());
+
+            scheduler = new ThreadPoolTaskScheduler();
+            scheduler.setThreadNamePrefix("stomp-heartbeat-");
+            scheduler.setDaemon(true);
+            scheduler.initialize();
+            client.setTaskScheduler(scheduler);
+            client.setDefaultHeartbeat(profile.getHeartbeat());
+
+            logger.info(profile.toString());
+            stompClient = client;
+        }
+        return stompClient;
+    }
+
+    /**
+     * @return connect latency, outages and time since the last received frame
+     */
+    public Liveness getLiveness()
+    {
+        return liveness;
+    }
+
     /**
      * Configurate the connection settings and tries to connect to the server.
+     * Missing heartbeats or a closed socket start the reconnect of the supervisor.
      *
-     * @throws ExecutionException
-     * @throws InterruptedException
+     * @throws Exception if the first connection could not be established
+     */
+    private void connect(String host, String user, String pass) throws Exception
+    {
+        WebSocketStompClient client = getStompClient();
+        long timeout = profile.getConnectTimeoutSeconds();
+
+        ConnectionSupervisor connection = new ConnectionSupervisor(
+                () -> client.connect(host, (WebSocketHttpHeaders) null,
+                        connectionHeader(user, pass), sessionHandler).get(timeout, TimeUnit.SECONDS),
+                this::onReconnected, liveness);
+        sessionHandler = new StompSessionHandler(this::onConnected, connection::connectionLost);
+        connection.addListener(state -> stateListeners.forEach(listener -> listener.accept(state)));
+        supervisor = connection;
+
+        session = connection.start();
+        acks = new AckBatcher(this::sendConfirmations);
+        rpc = new RpcClient(session);
+        outbox = new OutboxSender(this::sendFrame);
+    }
+
+    /**
+     * Swaps the request client to the new session and sends the
+     * messages again that were not confirmed before the connection was lost.
      */
-    private void connect(String host, String user, String pass) throws ExecutionException, InterruptedException
+    private void onReconnected(StompSession reconnected)
     {
-        List<Transport> transports = new ArrayList<>(1);
-        transports.add(
-                new WebSocketTransport(
-                        new StandardWebSocketClient()));
+        RpcClient old = rpc;
+        session = reconnected;
+        rpc = new RpcClient(reconnected);
 
-        SockJsClient sockJsClient = new SockJsClient(transports);
-        stompClient = new WebSocketStompClient(sockJsClient);
+        if (old != null)
+        {
+            old.close();
+        }
+
+        OutboxSender sender = outbox;
+        if (sender != null)
+        {
+            sender.resendAll();
+        }
+    }
+
+    /**
+     * Reads the codec the server accepted, JSON if it ignored the offer.
+     */
+    private void onConnected(StompHeaders connectedHeaders)
+    {
+        binary = BINARY_CODEC.equals(connectedHeaders.getFirst(CODEC_HEADER));
+        logger.info("Frames are sent as " + (binary ? "binary" : "JSON"));
+    }
+
+    /**
+     * Creates the send headers, with binary content-type if the server accepts it.
+     *
+     * @param destination server URL
+     */
+    private StompHeaders sendHeaders(String destination)
+    {
+        StompHeaders headers = new StompHeaders();
+        headers.setDestination(destination);
+
+        if (binary)
+        {
+            headers.setContentType(BinaryMessageConverter.BINARY);
+        }
+        return headers;
+    }
 
-        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+    /**
+     * Sends one message of the outbox with its client ID as header.
+     *
+     * @return true if it was send, false if there is no connection
+     */
+    private boolean sendFrame(String clientID, Message message)
+    {
+        StompSession current = session;
+        if (current == null || !isConnected())
+        {
+            return false;
+        }
 
-        sessionHandler = new StompSessionHandler();
-        session = stompClient.connect(host, (WebSocketHttpHeaders) null,
-                connectionHeader(user, pass), sessionHandler).get();
+        StompHeaders headers = sendHeaders("/app/send");
+        headers.set(CLIENT_ID_HEADER, clientID);
+        current.send(headers, message);
+        return true;
     }
 
     /**
      * Creates an CONNECT Stomp-Header with user login credentials
+     * and the offer of the binary codec, if enabled
      *
      * @return CONNECT StompHeader
      */
@@ -126,33 +339,48 @@ public class ServerConnection
         StompHeaders connectHeaders = new StompHeaders();
         connectHeaders.add("login", user);
         connectHeaders.add("passcode", pass);
+
+        if (profile.isBinaryCodec())
+        {
+            connectHeaders.add(CODEC_HEADER, BINARY_CODEC);
+        }
         return connectHeaders;
     }
 
     /**
      * Subscribes the message URL from that all messages will be received.
+     * A frame is decoded while it is read and the callback is called once per
+     * chunk of at most {@link ConnectionProfile#getSyncChunkSize()} messages,
+     * so a large backlog is stored chunk by chunk.
+     *
+     * @param callback stores the received messages
+     * @param cursor   supplies the sync cursor sent with every receive request
      */
-    public void subscribeMessage(Consumer<Message[]> callback)
+    public void subscribeMessage(Consumer<Message[]> callback, Supplier<SyncCursor> cursor)
     {
-        session.subscribe("/user/queue/messages", new StompFrameHandler()
+        syncCursor = cursor;
+        int chunkSize = profile.getSyncChunkSize();
+        supervisor.subscribe("/user/queue/messages", new StompFrameHandler()
         {
             @Override
             public Type getPayloadType(StompHeaders headers)
             {
-                return Message[].class;
+                return byte[].class;
             }
 
             @Override
             public void handleFrame(StompHeaders headers, Object payload)
             {
-                Message[] messages = (Message[]) payload;
-                callback.accept(messages);
+                try
+                {
+                    MessageStreamDecoder.decode((byte[]) payload, headers.getContentType(), chunkSize, callback);
+                } catch (IllegalArgumentException e)
+                {
+                    //the rest of the frame is not confirmed, so the server delivers it again
+                    logger.warning("Message frame could not be decoded: " + e.getMessage());
+                }
             }
-        });
-
-        //Informs the server that we subscribed the message URL
-        //and that we ready to receive messages.
-        session.send("/app/receive", "");
+        }, this::requestMessages);
     }
 
     /**
@@ -160,7 +388,7 @@ public class ServerConnection
      */
     public void subscribeGroups(Consumer<Group> callback)
     {
-        session.subscribe("/user/queue/groups", new StompFrameHandler()
+        supervisor.subscribe("/user/queue/groups", new StompFrameHandler()
         {
             @Override
             public Type getPayloadType(StompHeaders headers)
@@ -173,11 +401,28 @@ public class ServerConnection
             {
                 callback.accept((Group) payload);
             }
-        });
+        }, this::requestMessages);
+    }
+
+    /**
+     * Informs the server that we subscribed the message URL
+     * and that we ready to receive messages. After a reconnect the
+     * server delivers the messages that were not confirmed again.
+     * The sync cursor is sent along, so the server can skip the
+     * messages that are already stored.
+     */
+    private void requestMessages(StompSession session)
+    {
+        StompHeaders headers = new StompHeaders();
+        headers.setDestination("/app/receive");
 
-        //Informs the server that we subscribed the message URL
-        //and that we ready to receive messages.
-        session.send("/app/receive", "");
+        SyncCursor cursor = syncCursor.get();
+        if (cursor != null && !cursor.isNone())
+        {
+            headers.add(SYNC_ID_HEADER, String.valueOf(cursor.getServerID()));
+            headers.add(SYNC_TIMESTAMP_HEADER, String.valueOf(cursor.getTimestamp()));
+        }
+        session.send(headers, "");
     }
 
     /**
@@ -186,7 +431,7 @@ public class ServerConnection
      */
     public void subscribeMessageConfirmation(Consumer<Message> callback)
     {
-        session.subscribe("/user/queue/received", new StompFrameHandler()
+        supervisor.subscribe("/user/queue/received", new StompFrameHandler()
         {
             @Override
             public Type getPayloadType(StompHeaders headers)
@@ -197,41 +442,83 @@ public class ServerConnection
             @Override
             public void handleFrame(StompHeaders headers, Object payload)
             {
-                callback.accept((Message) payload);
+                Message message = (Message) payload;
+                confirmed(headers, message);
+                callback.accept(message);
             }
-        });
+        }, null);
     }
 
+    /**
+     * Removes the confirmed message from the outbox, by its client ID
+     * if the server returns the header otherwise by its content.
+     */
+    private void confirmed(StompHeaders headers, Message confirmation)
+    {
+        OutboxSender sender = outbox;
+        if (sender == null)
+        {
+            return;
+        }
+
+        String clientID = headers.getFirst(CLIENT_ID_HEADER);
+        if (clientID != null)
+        {
+            sender.confirmed(clientID);
+        }
+        else
+        {
+            sender.confirmed(confirmation);
+        }
+    }
 
     /**
-     * Send the passed object to the server.
+     * Send the passed object to the server. The message is stored in the outbox
+     * first and sent from there, it is kept until the server confirms it.
      *
      * @param clientMessage ClientMessage object
-     * @return true if it was send otherwise false
+     * @return true if it was stored in the outbox otherwise false
      */
     public boolean sendMessage(Message clientMessage)
     {
-        if (session.isConnected())
+        OutboxSender sender = outbox;
+        if (sender == null || OutboxLogic.INSTANCE.enqueue(clientMessage) == null)
         {
-            session.send("/app/send", clientMessage);
-            return true;
+            return false;
         }
-        return false;
+
+        sender.wake();
+        return true;
     }
 
     /**
      * Sends the messageID of an received message from the server
-     * back to the server to confirm the receipt
+     * back to the server to confirm the receipt. The IDs are collected
+     * by an {@link AckBatcher} and confirmed in batches.
      *
      * @param messageID server ID of the message
-     * @return true if it was send otherwise false
+     * @return true if it will be send otherwise false
      */
     public boolean sendConfirmation(int messageID)
     {
-        if (session.isConnected())
+        AckBatcher batcher = acks;
+        return batcher != null && isConnected() && batcher.add(messageID);
+    }
+
+    /**
+     * Confirms the receipt of several messages with one frame.
+     * Unconfirmed messages are delivered again by the server after the next login.
+     *
+     * @param messageIDs server IDs of the messages
+     * @return true if it was send otherwise false
+     */
+    public boolean sendConfirmations(int[] messageIDs)
+    {
+        StompSession current = session;
+        if (current != null && current.isConnected())
         {
-            System.out.println("Verbindung aktiv!" + messageID + " Message bestätigt");
-            session.send("/app/received", new int[]{messageID});
+            logger.fine(messageIDs.length + " Messages bestätigt");
+            current.send(sendHeaders("/app/received"), messageIDs);
             return true;
         }
         return false;
@@ -245,22 +532,24 @@ public class ServerConnection
         headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
 
         HttpEntity<String> entity = new HttpEntity<String>("name=" + name + "&password=" + password, headers);
+        usersByName.forget(name);
         return restTemplate.postForObject("http://localhost:8080/users", entity,User.class);
     }
 
     /**
-     * Requests the server to send an user object about an name
+     * Requests the server to send an user object about an name.
+     * Concurrent requests for the same name share one server request.
      *
      * @param name name of the requested user object
      */
     public void getUserFromName(String name, Consumer<User> callback)
     {
-        request("/app/get.user.by.name/" + name, callback, User.class);
+        usersByName.request(name, callback, () -> lookup("/app/get.user.by.name/" + name, User.class));
     }
 
     public void getUserFromID(int ID, Consumer<User> callback)
     {
-        request("/app/get.user.by.id/" + ID, callback, User.class);
+        usersByID.request(ID, callback, () -> lookup("/app/get.user.by.id/" + ID, User.class));
     }
 
     public void getGroups(Consumer<Group[]> callback)
@@ -275,17 +564,22 @@ public class ServerConnection
 
     public void getGroupByID(int groupID, Consumer<Group> callback)
     {
-        request("/app/get.group.by.id/" + groupID, callback, Group.class);
+        groupsByID.request(groupID, callback, () -> lookup("/app/get.group.by.id/" + groupID, Group.class));
     }
 
     public void getGroupByName(String name, Consumer<Group> callback)
     {
-        request("/app/get.group.by.name/" + name, callback, Group.class);
+        groupsByName.request(name, callback, () -> lookup("/app/get.group.by.name/" + name, Group.class));
     }
 
     public void addUserToGroup(int userID, int groupID)
     {
-        session.send("/app/add.user.to.group/" + groupID + "/" + userID, null);
+        StompSession current = session;
+        if (current == null || !current.isConnected())
+        {
+            return;
+        }
+        current.send("/app/add.user.to.group/" + groupID + "/" + userID, null);
     }
 
     public void removeUserFromGroup(int userID, int groupID, Consumer<Group> callback)
@@ -295,6 +589,7 @@ public class ServerConnection
 
     public void createGroup(String name, Consumer<Group> callback)
     {
+        groupsByName.forget(name);
         request("/app/create.group/" + name, callback, Group.class);
     }
 
@@ -304,25 +599,60 @@ public class ServerConnection
     }
 
 
+    /**
+     * Requests a server URL and passes the reply to the callback.
+     * The callback receives null if there is no reply in time or the connection is closed.
+     *
+     * @param name     requested server URL
+     * @param callback receives the reply
+     * @param type     payload type of the reply
+     */
     private <T> void request(String name, Consumer<T> callback, Class<? extends T> type)
     {
-        synchronized (session)
-        {
-            session.subscribe(name, new StompFrameHandler()
+        call(name, type).whenComplete((result, error) -> {
+            if (error != null)
             {
-                @Override
-                public Type getPayloadType(StompHeaders headers)
-                {
-                    return type;
-                }
+                logger.fine("Request " + name + " failed: " + error);
+            }
+            callback.accept(error == null ? result : null);
+        });
+    }
 
-                @Override
-                public void handleFrame(StompHeaders headers, Object payload)
-                {
-                    callback.accept((T) payload);
-                }
-            });
-        }
+    /**
+     * Requests a server URL for a {@link SingleFlight}. Failures complete the
+     * future exceptionally, so they are not taken for an unknown name.
+     *
+     * @param name requested server URL
+     * @param type payload type of the reply
+     * @return future of the reply
+     */
+    private <T> CompletableFuture<T> lookup(String name, Class<T> type)
+    {
+        return call(name, type).whenComplete((result, error) -> {
+            if (error != null)
+            {
+                logger.fine("Request " + name + " failed: " + error);
+            }
+        });
     }
 
+    /**
+     * Requests a server URL, see {@link RpcClient#call(String, Class)}.
+     *
+     * @param name requested server URL
+     * @param type payload type of the reply
+     * @return future of the reply
+     */
+    public <T> CompletableFuture<T> call(String name, Class<T> type)
+    {
+        RpcClient client = rpc;
+
+        if (client == null)
+        {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(new IllegalStateException("Not connected"));
+            return future;
+        }
+        return client.call(name, type);
+    }
 }
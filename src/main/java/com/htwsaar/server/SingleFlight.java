@@ -0,0 +1,160 @@
+package com.htwsaar.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent server lookups for the same key. Only the first request
+ * of a key is sent to the server, later requests join it and all callbacks
+ * receive the same result.
+ * <p>
+ * Keys answered with null can optionally be remembered for a while
+ * (negative cache), so lookups of unknown names are not repeated. A failed
+ * request (timeout, lost connection) is no answer: its callbacks receive null
+ * as well, but the key is not remembered and the next lookup asks again.
+ *
+ * @param <K> lookup key (ID, name)
+ * @param <V> result type
+ * @version 1.1
+ */
+public class SingleFlight<K, V>
+{
+    /**
+     * A request that is not answered within this time is sent again by the next caller.
+     */
+    public static final long DEFAULT_FLIGHT_TIMEOUT_MILLIS = 10_000;
+
+    private final HashMap<K, Flight<V>> inFlight = new HashMap<>();
+    private final HashMap<K, Long> unknown = new HashMap<>();
+
+    private final long negativeTtlMillis;
+    private final long flightTimeoutMillis;
+
+    /**
+     * Creates a SingleFlight without negative cache.
+     */
+    public SingleFlight()
+    {
+        this(0);
+    }
+
+    /**
+     * @param negativeTtlMillis time a key answered with null is remembered, 0 disables the negative cache
+     */
+    public SingleFlight(long negativeTtlMillis)
+    {
+        this(negativeTtlMillis, DEFAULT_FLIGHT_TIMEOUT_MILLIS);
+    }
+
+    public SingleFlight(long negativeTtlMillis, long flightTimeoutMillis)
+    {
+        this.negativeTtlMillis = negativeTtlMillis;
+        this.flightTimeoutMillis = flightTimeoutMillis;
+    }
+
+    /**
+     * Requests the value of the key.
+     *
+     * @param key      lookup key
+     * @param callback receives the result, null if the key is unknown or the request failed
+     * @param loader   sends the request to the server, the future completes with the reply
+     *                 or exceptionally if there is none
+     */
+    public void request(K key, Consumer<V> callback, Supplier<CompletableFuture<V>> loader)
+    {
+        long now = System.currentTimeMillis();
+        boolean knownUnknown;
+
+        synchronized (this)
+        {
+            Long expires = unknown.get(key);
+            knownUnknown = expires != null && expires > now;
+
+            if (!knownUnknown)
+            {
+                unknown.remove(key);
+
+                Flight<V> flight = inFlight.get(key);
+                if (flight != null && now - flight.started < flightTimeoutMillis)
+                {
+                    flight.callbacks.add(callback);
+                    return;
+                }
+
+                Flight<V> next = new Flight<>(now);
+                if (flight != null)
+                {
+                    //the old request got no answer, its callbacks wait for the new one
+                    next.callbacks.addAll(flight.callbacks);
+                }
+                next.callbacks.add(callback);
+                inFlight.put(key, next);
+            }
+        }
+
+        if (knownUnknown)
+        {
+            callback.accept(null);
+            return;
+        }
+
+        loader.get().whenComplete((result, error) -> complete(key, result, error != null));
+    }
+
+    /**
+     * Removes the key from the negative cache, e.g. after an user with that name was created.
+     *
+     * @param key lookup key
+     */
+    public synchronized void forget(K key)
+    {
+        unknown.remove(key);
+    }
+
+    /**
+     * Drops all pending requests and the negative cache.
+     */
+    public synchronized void clear()
+    {
+        inFlight.clear();
+        unknown.clear();
+    }
+
+    /**
+     * @param failed true if the request got no answer, then the result is null but the key is not unknown
+     */
+    private void complete(K key, V result, boolean failed)
+    {
+        Flight<V> flight;
+
+        synchronized (this)
+        {
+            flight = inFlight.remove(key);
+
+            if (result == null && !failed && negativeTtlMillis > 0)
+            {
+                unknown.put(key, System.currentTimeMillis() + negativeTtlMillis);
+            }
+        }
+
+        if (flight != null)
+        {
+            flight.callbacks.forEach(callback -> callback.accept(result));
+        }
+    }
+
+    private static class Flight<V>
+    {
+        private final long started;
+        private final List<Consumer<V>> callbacks = new ArrayList<>();
+
+        private Flight(long started)
+        {
+            this.started = started;
+        }
+    }
+}
@@ -1,26 +1,36 @@
 package com.htwsaar.server;
 
-import com.htwsaar.container.Message;
 import org.springframework.messaging.simp.stomp.*;
 
-import java.lang.reflect.Type;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Handels StompSession events like afterConnected and
  * all messages received from subscribed server URLs.
+ * Transport errors are reported to the {@link ConnectionSupervisor}.
  *
  * @author Matthias Gessner
- * @version 1.2
+ * @version 1.4
  */
 public class StompSessionHandler extends StompSessionHandlerAdapter
 {
+    private static final Logger logger = Logger.getLogger(StompSessionHandler.class.getName());
 
+    private final Consumer<StompHeaders> onConnected;
+    private final BiConsumer<StompSession, Throwable> onConnectionLost;
 
-
-
+    /**
+     * @param onConnected      receives the headers of the CONNECTED frame
+     * @param onConnectionLost receives the session and the cause if the transport failed
+     */
+    public StompSessionHandler(Consumer<StompHeaders> onConnected, BiConsumer<StompSession, Throwable> onConnectionLost)
+    {
+        this.onConnected = onConnected;
+        this.onConnectionLost = onConnectionLost;
+    }
 
     /**
      * Event that is raised after an connection is established.
@@ -31,32 +41,33 @@ public class StompSessionHandler extends StompSessionHandlerAdapter
     @Override
     public void afterConnected(StompSession session, StompHeaders connectedHeaders)
     {
+        onConnected.accept(connectedHeaders);
     }
 
     /**
-     * Event that is raised if an error is occurred.
+     * Event that is raised if a received frame could not be handled.
+     * The session stays open, closing it would only deliver the same frame again.
      */
     @Override
     public void handleException(StompSession session, StompCommand command,
                                 StompHeaders headers, byte[] payload, Throwable exception)
     {
-        if (session.isConnected())
-        {
-            session.disconnect();
-        }
-        System.out.println("Exception in handleException des SessionHandlers");
-        exception.printStackTrace(); //Exception leer?
+        logger.log(Level.WARNING, "Could not handle " + command + " frame of " + headers.getDestination(), exception);
     }
 
+    /**
+     * Event that is raised if the connection failed, e.g. the socket was closed or heartbeats are missing.
+     */
     @Override
     public void handleTransportError(StompSession session, Throwable exception)
     {
-        System.out.println("Exception in handleTransportError");
+        logger.warning("Transport error: " + exception);
+        onConnectionLost.accept(session, exception);
     }
 
     @Override
     public void handleFrame(StompHeaders headers, Object payload)
     {
-        System.out.println("handleFrame ausgefuhrt");
+        logger.fine("Unhandled frame of " + headers.getDestination());
     }
-}
\ No newline at end of file
+}
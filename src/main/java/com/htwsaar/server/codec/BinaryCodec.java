@@ -0,0 +1,451 @@
+package com.htwsaar.server.codec;
+
+import com.htwsaar.container.Group;
+import com.htwsaar.container.Message;
+import com.htwsaar.container.User;
+
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Compact binary encoding of {@link Message}, {@link User}, {@link Group},
+ * arrays of them and of {@code int[]} (message confirmations).
+ * <p>
+ * A payload starts with the format version and a type tag, arrays follow
+ * with their length. Integers are zigzag varints, timestamps are epoch
+ * milliseconds and strings are length prefixed UTF-8, so a message of a
+ * backlog needs a few bytes plus its text instead of repeated JSON field
+ * names and a formatted date. Arrays can also be decoded in chunks, see
+ * {@link #decodeChunks(byte[], Class, int, Consumer)}.
+ * <p>
+ * Over SockJS every STOMP frame travels as a text message, the client turns the
+ * body into a string with UTF-8 and back. Bytes that are no valid UTF-8 would be
+ * replaced on the way, so all bytes outside of strings are kept below 0x80: the
+ * varints carry 6 bits per byte with 0x40 as continuation bit.
+ *
+ * @version 1.4
+ */
+public class BinaryCodec
+{
+    public static final int VERSION = 2;
+
+    private static final int MESSAGE = 1;
+    private static final int USER = 2;
+    private static final int GROUP = 3;
+    private static final int INT = 4;
+    private static final int ARRAY = 0x40;
+
+    /**
+     * @return true if values of the class can be encoded
+     */
+    public static boolean supports(Class<?> type)
+    {
+        return tagOf(type) != 0;
+    }
+
+    private static int tagOf(Class<?> type)
+    {
+        if (type == Message.class)
+        {
+            return MESSAGE;
+        }
+        if (type == User.class)
+        {
+            return USER;
+        }
+        if (type == Group.class)
+        {
+            return GROUP;
+        }
+        if (type == int[].class)
+        {
+            return INT | ARRAY;
+        }
+        if (type.isArray() && type != int[].class)
+        {
+            int component = tagOf(type.getComponentType());
+            return component == 0 || (component & ARRAY) != 0 ? 0 : component | ARRAY;
+        }
+        return 0;
+    }
+
+    /**
+     * Encodes a supported value.
+     *
+     * @param value value to be encoded
+     * @return encoded bytes
+     * @throws IllegalArgumentException if the type of the value is not supported
+     */
+    public static byte[] encode(Object value)
+    {
+        int tag = tagOf(value.getClass());
+        if (tag == 0)
+        {
+            throw new IllegalArgumentException("Not supported: " + value.getClass());
+        }
+
+        Writer out = new Writer(64);
+        out.write(VERSION);
+        out.write(tag);
+
+        if (value instanceof int[])
+        {
+            int[] ints = (int[]) value;
+            out.writeVarInt(ints.length);
+            for (int i : ints)
+            {
+                out.writeVarInt(i);
+            }
+        }
+        else if ((tag & ARRAY) != 0)
+        {
+            Object[] values = (Object[]) value;
+            out.writeVarInt(values.length);
+            for (Object element : values)
+            {
+                writeValue(out, tag & ~ARRAY, element);
+            }
+        }
+        else
+        {
+            writeValue(out, tag, value);
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a payload created by {@link #encode(Object)}.
+     *
+     * @param bytes payload
+     * @param type  expected type
+     * @return decoded value
+     * @throws IllegalArgumentException if the payload is not of the expected type or malformed
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T decode(byte[] bytes, Class<T> type)
+    {
+        Reader in = new Reader(bytes);
+
+        int version = in.read();
+        int tag = in.read();
+        if (version != VERSION || tag != tagOf(type))
+        {
+            throw new IllegalArgumentException("Payload of version " + version + " and type " + tag +
+                    " can not be read as " + type.getSimpleName());
+        }
+
+        if (type == int[].class)
+        {
+            int[] ints = new int[in.readLength()];
+            for (int i = 0; i < ints.length; i++)
+            {
+                ints[i] = in.readVarInt();
+            }
+            return (T) ints;
+        }
+
+        if ((tag & ARRAY) != 0)
+        {
+            int length = in.readLength();
+            Object[] values = (Object[]) Array.newInstance(type.getComponentType(), length);
+            for (int i = 0; i < length; i++)
+            {
+                values[i] = readValue(in, tag & ~ARRAY);
+            }
+            return (T) values;
+        }
+
+        return (T) readValue(in, tag);
+    }
+
+    /**
+     * Decodes an array payload created by {@link #encode(Object)} in chunks,
+     * each chunk is handed on before the next one is decoded.
+     *
+     * @param bytes     payload
+     * @param type      expected array type
+     * @param chunkSize maximal number of elements per chunk
+     * @param chunks    called with each chunk, null elements are skipped
+     * @throws IllegalArgumentException if the payload is not of the expected type or malformed
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> void decodeChunks(byte[] bytes, Class<T[]> type, int chunkSize, Consumer<T[]> chunks)
+    {
+        Reader in = new Reader(bytes);
+
+        int version = in.read();
+        int tag = in.read();
+        if (version != VERSION || tag != tagOf(type) || (tag & ARRAY) == 0)
+        {
+            throw new IllegalArgumentException("Payload of version " + version + " and type " + tag +
+                    " can not be read as " + type.getSimpleName());
+        }
+
+        List<T> chunk = new ArrayList<>(Math.min(chunkSize, 64));
+        T[] empty = (T[]) Array.newInstance(type.getComponentType(), 0);
+
+        int length = in.readLength();
+        for (int i = 0; i < length; i++)
+        {
+            T value = (T) readValue(in, tag & ~ARRAY);
+            if (value == null)
+            {
+                continue;
+            }
+
+            chunk.add(value);
+            if (chunk.size() >= chunkSize)
+            {
+                chunks.accept(chunk.toArray(empty));
+                chunk.clear();
+            }
+        }
+
+        if (!chunk.isEmpty())
+        {
+            chunks.accept(chunk.toArray(empty));
+        }
+    }
+
+    private static void writeValue(Writer out, int tag, Object value)
+    {
+        if (value == null)
+        {
+            out.write(0);
+            return;
+        }
+        out.write(1);
+
+        switch (tag)
+        {
+            case MESSAGE:
+                Message message = (Message) value;
+                out.writeVarInt(message.getId());
+                out.writeVarInt(message.getOrigin());
+                out.writeVarInt(message.getDestination());
+                out.writeVarInt(message.getMessageType());
+                out.writeVarLong(message.hasTimestamp() ? message.getTimeMillis() : -1);
+                out.writeString(message.getMessage());
+                break;
+            case USER:
+                User user = (User) value;
+                out.writeVarInt(user.getID());
+                out.writeString(user.getName());
+                break;
+            case GROUP:
+                Group group = (Group) value;
+                out.writeVarInt(group.getID());
+                out.writeVarInt(group.getCreator());
+                out.writeString(group.getName());
+
+                List<User> members = group.getMembers();
+                out.writeVarInt(members == null ? -1 : members.size());
+                if (members != null)
+                {
+                    for (User member : members)
+                    {
+                        writeValue(out, USER, member);
+                    }
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown type " + tag);
+        }
+    }
+
+    private static Object readValue(Reader in, int tag)
+    {
+        if (in.read() == 0)
+        {
+            return null;
+        }
+
+        switch (tag)
+        {
+            case MESSAGE:
+                int id = in.readVarInt();
+                int origin = in.readVarInt();
+                int destination = in.readVarInt();
+                int messageType = in.readVarInt();
+                long time = in.readVarLong();
+                String text = in.readString();
+                return new Message(id, origin, destination, text, time == -1 ? Message.NO_TIME : time, messageType);
+            case USER:
+                return new User(in.readVarInt(), in.readString());
+            case GROUP:
+                Group group = new Group(in.readVarInt(), null, 0);
+                group.setCreator(in.readVarInt());
+                group.setName(in.readString());
+
+                int count = in.readNullableLength();
+                if (count >= 0)
+                {
+                    ArrayList<User> members = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++)
+                    {
+                        members.add((User) readValue(in, USER));
+                    }
+                    group.setMembers(members);
+                }
+                return group;
+            default:
+                throw new IllegalArgumentException("Unknown type " + tag);
+        }
+    }
+
+    /**
+     * Growing byte buffer with varint encoding
+     */
+    private static class Writer
+    {
+        private byte[] buffer;
+        private int size;
+
+        private Writer(int capacity)
+        {
+            buffer = new byte[capacity];
+        }
+
+        private void ensure(int bytes)
+        {
+            if (size + bytes > buffer.length)
+            {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + bytes));
+            }
+        }
+
+        private void write(int b)
+        {
+            ensure(1);
+            buffer[size++] = (byte) b;
+        }
+
+        private void writeVarInt(int value)
+        {
+            writeVarLong(value);
+        }
+
+        private void writeVarLong(long value)
+        {
+            long zigzag = (value << 1) ^ (value >> 63);
+            ensure(11);
+            while ((zigzag & ~0x3FL) != 0)
+            {
+                buffer[size++] = (byte) ((zigzag & 0x3F) | 0x40);
+                zigzag >>>= 6;
+            }
+            buffer[size++] = (byte) zigzag;
+        }
+
+        private void writeString(String value)
+        {
+            if (value == null)
+            {
+                writeVarInt(-1);
+                return;
+            }
+
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        private byte[] toByteArray()
+        {
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+
+    /**
+     * Reads the encoding of {@link Writer}
+     */
+    private static class Reader
+    {
+        private final byte[] buffer;
+        private int position;
+
+        private Reader(byte[] buffer)
+        {
+            this.buffer = buffer;
+        }
+
+        private int read()
+        {
+            if (position >= buffer.length)
+            {
+                throw new IllegalArgumentException("Unexpected end of payload");
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        private int readVarInt()
+        {
+            return (int) readVarLong();
+        }
+
+        private long readVarLong()
+        {
+            long zigzag = 0;
+            for (int shift = 0; shift < 64; shift += 6)
+            {
+                int b = read();
+                if (b >= 0x80)
+                {
+                    throw new IllegalArgumentException("Malformed varint");
+                }
+                zigzag |= (long) (b & 0x3F) << shift;
+                if ((b & 0x40) == 0)
+                {
+                    return (zigzag >>> 1) ^ -(zigzag & 1);
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        /**
+         * Reads an array or string length and checks it against the remaining bytes
+         */
+        private int readLength()
+        {
+            int length = readVarInt();
+            if (length < 0 || length > buffer.length - position)
+            {
+                throw new IllegalArgumentException("Invalid length " + length);
+            }
+            return length;
+        }
+
+        /**
+         * Like {@link #readLength()}, but passes -1 through for a null string or list
+         */
+        private int readNullableLength()
+        {
+            int length = readVarInt();
+            if (length != -1 && (length < 0 || length > buffer.length - position))
+            {
+                throw new IllegalArgumentException("Invalid length " + length);
+            }
+            return length;
+        }
+
+        private String readString()
+        {
+            int length = readNullableLength();
+            if (length == -1)
+            {
+                return null;
+            }
+
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.htwsaar.server.codec;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.util.MimeType;
+
+import java.util.Arrays;
+
+/**
+ * Message converter for the {@link BinaryCodec}. It only reads and writes frames
+ * with the content-type {@link #BINARY}, all other frames are left to the next
+ * converter, see {@link #withJsonFallback()}.
+ *
+ * @version 1.1
+ */
+public class BinaryMessageConverter extends AbstractMessageConverter
+{
+    public static final MimeType BINARY = new MimeType("application", "x-wave-binary");
+
+    public BinaryMessageConverter()
+    {
+        super(BINARY);
+        setStrictContentTypeMatch(true);
+    }
+
+    /**
+     * Creates a converter that reads binary frames by their content-type and JSON
+     * frames otherwise. Frames are written as JSON unless the content-type of the
+     * send headers is {@link #BINARY}. Frames subscribed as {@code byte[]} are
+     * passed through undecoded, see {@link RawPayloadConverter}.
+     */
+    public static MessageConverter withJsonFallback()
+    {
+        return new CompositeMessageConverter(Arrays.asList(
+                new RawPayloadConverter(),
+                new BinaryMessageConverter(),
+                new MappingJackson2MessageConverter()));
+    }
+
+    @Override
+    protected boolean supports(Class<?> type)
+    {
+        return BinaryCodec.supports(type);
+    }
+
+    @Override
+    protected Object convertFromInternal(Message<?> message, Class<?> targetClass, Object conversionHint)
+    {
+        Object payload = message.getPayload();
+
+        if (!(payload instanceof byte[]))
+        {
+            return null;
+        }
+        return BinaryCodec.decode((byte[]) payload, targetClass);
+    }
+
+    @Override
+    protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint)
+    {
+        return BinaryCodec.encode(payload);
+    }
+}
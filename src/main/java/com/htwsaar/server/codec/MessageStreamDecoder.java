@@ -0,0 +1,97 @@
+package com.htwsaar.server.codec;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.htwsaar.container.Message;
+import org.springframework.util.MimeType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Decodes a {@code Message[]} payload element by element and hands the messages
+ * on in chunks while the payload is still being read. A backlog of many
+ * thousand messages is never materialised as one array, only one chunk of
+ * decoded messages is alive at a time and the first chunk can be stored
+ * before the rest of the payload is decoded.
+ * <p>
+ * JSON payloads are read with the Jackson streaming parser, payloads with the
+ * content-type {@link BinaryMessageConverter#BINARY} with {@link BinaryCodec}.
+ *
+ * @version 1.0
+ */
+public class MessageStreamDecoder
+{
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+
+    /**
+     * Configured like the mapper of Spring's MappingJackson2MessageConverter,
+     * so the payloads are read the same way as before
+     */
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .configure(MapperFeature.DEFAULT_VIEW_INCLUSION, false);
+
+    /**
+     * @param payload     raw frame payload
+     * @param contentType content-type of the frame, may be null for JSON
+     * @param chunkSize   maximal number of messages per chunk
+     * @param chunks      called with each chunk on the calling thread, null elements are skipped
+     * @throws IllegalArgumentException if the payload is malformed, chunks before
+     *                                  the error were already handed on
+     */
+    public static void decode(byte[] payload, MimeType contentType, int chunkSize, Consumer<Message[]> chunks)
+    {
+        if (contentType != null && BinaryMessageConverter.BINARY.includes(contentType))
+        {
+            BinaryCodec.decodeChunks(payload, Message[].class, chunkSize, chunks);
+            return;
+        }
+        decodeJson(payload, chunkSize, chunks);
+    }
+
+    private static void decodeJson(byte[] payload, int chunkSize, Consumer<Message[]> chunks)
+    {
+        try (JsonParser parser = MAPPER.getFactory().createParser(payload))
+        {
+            if (parser.nextToken() != JsonToken.START_ARRAY)
+            {
+                throw new IllegalArgumentException("Expected an array of messages");
+            }
+
+            List<Message> chunk = new ArrayList<>(Math.min(chunkSize, 64));
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY)
+            {
+                if (token == null)
+                {
+                    throw new IllegalArgumentException("Unexpected end of payload");
+                }
+                if (token == JsonToken.VALUE_NULL)
+                {
+                    continue;
+                }
+
+                chunk.add(MAPPER.readValue(parser, Message.class));
+                if (chunk.size() >= chunkSize)
+                {
+                    chunks.accept(chunk.toArray(new Message[0]));
+                    chunk.clear();
+                }
+            }
+
+            if (!chunk.isEmpty())
+            {
+                chunks.accept(chunk.toArray(new Message[0]));
+            }
+        } catch (IOException e)
+        {
+            throw new IllegalArgumentException("Malformed message payload: " + e.getMessage(), e);
+        }
+    }
+}
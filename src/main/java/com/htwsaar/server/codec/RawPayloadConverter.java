@@ -0,0 +1,46 @@
+package com.htwsaar.server.codec;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.util.MimeTypeUtils;
+
+/**
+ * Hands the raw payload of frames that are subscribed as {@code byte[]} to the
+ * frame handler, whatever their content-type is. Used for frames that are
+ * decoded by the handler itself, see {@link MessageStreamDecoder}.
+ *
+ * @version 1.0
+ */
+public class RawPayloadConverter extends AbstractMessageConverter
+{
+    public RawPayloadConverter()
+    {
+        super(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+    }
+
+    @Override
+    protected boolean supports(Class<?> type)
+    {
+        return type == byte[].class;
+    }
+
+    @Override
+    protected boolean supportsMimeType(MessageHeaders headers)
+    {
+        return true;
+    }
+
+    @Override
+    protected Object convertFromInternal(Message<?> message, Class<?> targetClass, Object conversionHint)
+    {
+        Object payload = message.getPayload();
+        return payload instanceof byte[] ? payload : null;
+    }
+
+    @Override
+    protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint)
+    {
+        return payload;
+    }
+}
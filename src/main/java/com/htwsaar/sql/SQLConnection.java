@@ -1,28 +1,77 @@
 package com.htwsaar.sql;
 
+import com.htwsaar.logic.GroupLogic;
+import com.htwsaar.logic.UserLogic;
 import com.htwsaar.utils.Run;
+import org.sqlite.SQLiteConfig;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
 
 /**
- * Manages a SQLite connection. This includes open,
- * close and store the connection. (Singleton pattern)
+ * Manages the SQLite connections. This includes open,
+ * close and store the connections. (Singleton pattern)
+ * <p>
+ * All writes run on one writer connection, serialized by a single
+ * writer thread. Reads use a small pool of read-only connections, so
+ * they are not blocked by the writes when the database runs in WAL mode.
+ * Without WAL the reads run on the writer thread as well.
  *
  * @author Matthias Gessner
- * @version 2.1
+ * @version 3.1
  */
 public class SQLConnection
 {
+    private static final Logger logger = Logger.getLogger(SQLConnection.class.getName());
     private static final String NO_DATABASE_ERROR = "No database name selected.";
     public static final SQLConnection INSTANCE = new SQLConnection();
 
     private static final String JDBC_DRIVER = "org.sqlite.JDBC";
     private static final String DB_LOCATION = "resources/";
+    private static final int STATEMENT_CACHE_SIZE = 64;
+    private static final int READ_POOL_SIZE = 2;
+
+    /**
+     * Work that is done with a connection
+     *
+     * @param <R> result type
+     */
+    @FunctionalInterface
+    public interface ConnectionFunction<R>
+    {
+        R apply(Connection connection) throws SQLException;
+    }
 
     private String dbName;
-    private Connection con;
+    private volatile Connection con;
+    private final Map<Connection, StatementCache> statements = new ConcurrentHashMap<>();
+
+    private volatile ExecutorService writer;
+    private volatile Thread writerThread;
+    private volatile BlockingQueue<Connection> readers;
+    private final List<Connection> readConnections = new ArrayList<>();
+
+    /**
+     * Loaded again by every {@link #connect(String)}, so a changed storage.properties
+     * or system property takes effect with the next login
+     */
+    private StorageProfile profile;
+    private ScheduledExecutorService checkpoints;
 
     static
     {
@@ -51,25 +100,112 @@ public class SQLConnection
     }
 
     /**
-     * Returns the current connection. If there is no
-     * connection, a new will be created.
+     * Returns the current writer connection.
+     * Use {@link #read(ConnectionFunction)} and {@link #write(ConnectionFunction)}
+     * to work with the connections.
      *
      * @return current connection object
-     * @throws SQLException if there is no database name
-     *                      set when {@Link #newConnection()} is called.
      */
     public Connection getConnection()
     {
         return con;
     }
 
+    /**
+     * Returns the prepared statement cache of the passed connection.
+     *
+     * @param connection connection the statements belong to
+     * @return the cache if the connection is managed by this class otherwise null
+     */
+    public StatementCache getStatementCache(Connection connection)
+    {
+        return connection == null ? null : statements.get(connection);
+    }
+
+    /**
+     * Runs the function with a read-only connection of the pool.
+     * On the writer thread the writer connection is used, so a write
+     * transaction sees its own changes.
+     *
+     * @param function work to be done
+     * @return result of the function
+     * @throws SQLException database connection lost, sql-Syntax-Error
+     */
+    public <R> R read(ConnectionFunction<R> function) throws SQLException
+    {
+        BlockingQueue<Connection> pool = readers;
+
+        if (pool == null || Thread.currentThread() == writerThread)
+        {
+            return write(function);
+        }
+
+        Connection connection;
+        try
+        {
+            connection = pool.take();
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new SQLException(e);
+        }
+
+        try
+        {
+            return function.apply(connection);
+        } finally
+        {
+            pool.offer(connection);
+        }
+    }
+
+    /**
+     * Runs the function with the writer connection on the writer thread
+     * and waits for its result.
+     *
+     * @param function work to be done
+     * @return result of the function
+     * @throws SQLException database connection lost, sql-Syntax-Error
+     */
+    public <R> R write(ConnectionFunction<R> function) throws SQLException
+    {
+        ExecutorService executor = writer;
+        Connection connection = con;
+
+        if (executor == null || connection == null)
+        {
+            throw new SQLException(NO_DATABASE_ERROR);
+        }
+
+        if (Thread.currentThread() == writerThread)
+        {
+            return function.apply(connection);
+        }
+
+        Future<R> result = executor.submit(() -> function.apply(connection));
+        try
+        {
+            return result.get();
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new SQLException(e);
+        } catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof SQLException)
+            {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException(e.getCause());
+        }
+    }
+
     /**
      * Establish a new connection to the SQLite database.
      * If there is no database, an empty database will
      * be created by SQLite itself.
      *
-     * @return new Connection-Object
-     * @throws SQLException if there is no database name set.
+     * @return true if the connection is open
      */
     public boolean connect(String dbName)
     {
@@ -80,9 +216,36 @@ public class SQLConnection
                 close();
             }
 
-            con = DriverManager.getConnection("jdbc:sqlite:" + DB_LOCATION + dbName);
+            this.dbName = dbName;
+            String url = "jdbc:sqlite:" + DB_LOCATION + dbName;
+
+            profile = StorageProfile.load();
+            con = DriverManager.getConnection(url);
+            statements.put(con, new StatementCache(con, STATEMENT_CACHE_SIZE));
+
+            writer = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "sqlite-writer");
+                thread.setDaemon(true);
+                writerThread = thread;
+                return thread;
+            });
+
+            profile.apply(con, false);
+            logger.info(profile.report(con));
+
+            write(connection -> {
+                SQLDatabase.checkConsistency(connection);
+                return null;
+            });
 
-            SQLDatabase.checkConsistency(con);
+            if (StorageProfile.isWal(con))
+            {
+                openReaders(url);
+            }
+            scheduleCheckpoints();
+
+            UserLogic.INSTANCE.warmCache();
+            GroupLogic.INSTANCE.warmCache();
             return !con.isClosed();
         } catch (Exception e)
         {
@@ -92,15 +255,106 @@ public class SQLConnection
     }
 
     /**
-     * Closes the current connection
+     * Opens the pool of read-only connections.
      *
-     * @throws SQLException if connection could not be closed
+     * @param url jdbc url of the database
+     * @throws SQLException if a connection could not be opened
      */
-    public void close()
+    private void openReaders(String url) throws SQLException
+    {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setReadOnly(true);
+
+        BlockingQueue<Connection> pool = new ArrayBlockingQueue<>(READ_POOL_SIZE);
+        for (int i = 0; i < READ_POOL_SIZE; i++)
+        {
+            Connection reader = DriverManager.getConnection(url, config.toProperties());
+            profile.apply(reader, true);
+            statements.put(reader, new StatementCache(reader, STATEMENT_CACHE_SIZE));
+            readConnections.add(reader);
+            pool.add(reader);
+        }
+        readers = pool;
+    }
+
+    /**
+     * Starts periodic passive WAL checkpoints if the profile asks for them,
+     * so the write-ahead log does not grow during long sessions.
+     *
+     * @throws SQLException database connection lost
+     */
+    private void scheduleCheckpoints() throws SQLException
     {
-        Run.safe(() -> {
-            con.close();
-            con = null;
+        long interval = profile.getCheckpointInterval();
+
+        if (interval <= 0 || !StorageProfile.isWal(con))
+        {
+            return;
+        }
+
+        checkpoints = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "wal-checkpoint");
+            thread.setDaemon(true);
+            return thread;
         });
+        checkpoints.scheduleWithFixedDelay(() -> Run.safe(() -> write(connection -> {
+            try (Statement statement = connection.createStatement())
+            {
+                return statement.execute("PRAGMA wal_checkpoint(PASSIVE);");
+            }
+        })), interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Closes the current connections and all cached statements.
+     * Writes that are already queued are finished first.
+     */
+    public void close()
+    {
+        UserLogic.INSTANCE.clearCache();
+        GroupLogic.INSTANCE.clearCache();
+
+        if (checkpoints != null)
+        {
+            checkpoints.shutdownNow();
+            checkpoints = null;
+        }
+
+        ExecutorService executor = writer;
+        if (executor != null)
+        {
+            executor.shutdown();
+            if (Thread.currentThread() != writerThread)
+            {
+                Run.safe(() -> executor.awaitTermination(5, TimeUnit.SECONDS));
+            }
+            writer = null;
+        }
+
+        readers = null;
+        for (Connection reader : readConnections)
+        {
+            closeConnection(reader);
+        }
+        readConnections.clear();
+
+        Connection connection = con;
+        con = null;
+        if (connection != null)
+        {
+            closeConnection(connection);
+        }
+    }
+
+    private void closeConnection(Connection connection)
+    {
+        StatementCache cache = statements.remove(connection);
+        if (cache != null)
+        {
+            logger.info(cache.toString());
+            cache.clear();
+        }
+
+        Run.safe(connection::close);
     }
 }
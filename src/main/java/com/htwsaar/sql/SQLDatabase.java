@@ -3,66 +3,165 @@ package com.htwsaar.sql;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.HashMap;
-import java.util.Map;
+import java.sql.Statement;
+import java.util.logging.Logger;
 
 /**
- * Creates the table structure of SQLite-database.
+ * Creates and migrates the table structure of SQLite-database.
  * <p>
  * A SQLite database will be automatically created by the connection attempt
- * if there is no database. In that case the table structure will be created.
+ * if there is no database. The schema version of a database is stored in
+ * {@code PRAGMA user_version}, every migration with a higher version is
+ * applied in its own transaction.
  *
  * @author Matthias Gessner
- * @version 2.0
+ * @version 3.2
  */
 public class SQLDatabase
 {
-    private static final String CREATE_TABLE_ERROR = "A missing table could not been created.";
+    private static final Logger logger = Logger.getLogger(SQLDatabase.class.getName());
+    private static final String MIGRATION_ERROR = "The database could not been migrated to version ";
 
-    private static final HashMap<String, String> TABLES = new HashMap<String, String>()
+    /**
+     * Schema migrations, MIGRATIONS[i] migrates a database to version i + 1.
+     * Existing migrations must not be changed, add a new one instead.
+     */
+    private static final String[][] MIGRATIONS = {
+            //1: initial schema, databases created before the versioning have these tables already
+            {
+                    "CREATE TABLE IF NOT EXISTS Users (" +
+                            "ID INTEGER PRIMARY KEY, " +
+                            "Name TEXT NOT NULL UNIQUE);",
+                    "CREATE TABLE IF NOT EXISTS Groups (" +
+                            "ID INTEGER PRIMARY KEY, " +
+                            "Name TEXT NULL, " +
+                            "Creator INTEGER NOT NULL, " +
+                            "FOREIGN KEY (Creator) REFERENCES User(ID));",
+                    "CREATE TABLE IF NOT EXISTS Messages (" +
+                            "ID INTEGER PRIMARY KEY, " +
+                            "Origin INTEGER NULL, " +
+                            "Destination INTEGER NULL, " +
+                            "Message TEXT NULL, " +
+                            "Timestamp Timestamp NULL, " +
+                            "MessageType INTEGER NULL)",
+                    "CREATE TABLE IF NOT EXISTS Members (" +
+                            "Chat_ID INTEGER, " +
+                            "User_ID INTEGER, " +
+                            "PRIMARY KEY (Chat_ID, User_ID));"
+            },
+            //2: indexes for the conversation queries of MessageLogic
+            {
+                    "CREATE INDEX IF NOT EXISTS MessagesByDestination " +
+                            "ON Messages (MessageType, Destination, Timestamp);",
+                    "CREATE INDEX IF NOT EXISTS MessagesByOrigin " +
+                            "ON Messages (MessageType, Origin, Timestamp);"
+            },
+            //3: outbox of messages the server has not confirmed yet, see OutboxLogic
+            {
+                    "CREATE TABLE IF NOT EXISTS Outbox (" +
+                            "ID INTEGER PRIMARY KEY, " +
+                            "ClientID TEXT NOT NULL UNIQUE, " +
+                            "Origin INTEGER NOT NULL, " +
+                            "Destination INTEGER NOT NULL, " +
+                            "Message TEXT NULL, " +
+                            "Timestamp Timestamp NULL, " +
+                            "MessageType INTEGER NOT NULL, " +
+                            "Attempts INTEGER NOT NULL DEFAULT 0);"
+            },
+            //4: server IDs to skip duplicate deliveries and the sync cursor per account, see SyncLogic
+            {
+                    "ALTER TABLE Messages ADD COLUMN ServerID INTEGER NULL;",
+                    "CREATE UNIQUE INDEX IF NOT EXISTS MessagesByServerID ON Messages (ServerID);",
+                    "CREATE TABLE IF NOT EXISTS SyncState (" +
+                            "Account INTEGER PRIMARY KEY, " +
+                            "LastServerID INTEGER NOT NULL DEFAULT 0, " +
+                            "LastTimestamp INTEGER NOT NULL DEFAULT 0);"
+            },
+            //5: full-text index of the message texts, kept in sync by triggers, see MessageLogic.searchMessages
+            {
+                    "CREATE VIRTUAL TABLE IF NOT EXISTS MessageSearch USING fts5(" +
+                            "Message, content='Messages', content_rowid='ID', " +
+                            "tokenize='unicode61', prefix='2 3');",
+                    "CREATE TRIGGER IF NOT EXISTS MessageSearchInsert AFTER INSERT ON Messages BEGIN " +
+                            "INSERT INTO MessageSearch (rowid, Message) VALUES (new.ID, new.Message); END;",
+                    "CREATE TRIGGER IF NOT EXISTS MessageSearchDelete AFTER DELETE ON Messages BEGIN " +
+                            "INSERT INTO MessageSearch (MessageSearch, rowid, Message) " +
+                            "VALUES ('delete', old.ID, old.Message); END;",
+                    "CREATE TRIGGER IF NOT EXISTS MessageSearchUpdate AFTER UPDATE OF Message ON Messages BEGIN " +
+                            "INSERT INTO MessageSearch (MessageSearch, rowid, Message) " +
+                            "VALUES ('delete', old.ID, old.Message); " +
+                            "INSERT INTO MessageSearch (rowid, Message) VALUES (new.ID, new.Message); END;",
+                    "INSERT INTO MessageSearch (MessageSearch) VALUES ('rebuild');"
+            }
+    };
+
+    /**
+     * @return schema version created by the migrations
+     */
+    public static int getLatestVersion()
+    {
+        return MIGRATIONS.length;
+    }
+
+    /**
+     * Migrates the database to the latest schema version.
+     *
+     * @throws SQLException if database connection is lost or a migration failed
+     */
+    public static void checkConsistency(Connection connection) throws SQLException
     {
+        int version = getVersion(connection);
+
+        for (int next = version + 1; next <= MIGRATIONS.length; next++)
         {
-            put("Users", "CREATE TABLE IF NOT EXISTS Users (" +
-                    "ID INTEGER PRIMARY KEY, " +
-                    "Name TEXT NOT NULL UNIQUE);");
-            put("Groups", "CREATE TABLE IF NOT EXISTS Groups (" +
-                    "ID INTEGER PRIMARY KEY, " +
-                    "Name TEXT NULL, " +
-                    "Creator INTEGER NOT NULL, " +
-                    "FOREIGN KEY (Creator) REFERENCES User(ID));");
-            put("Messages", "CREATE TABLE IF NOT EXISTS Messages (" +
-                    "ID INTEGER PRIMARY KEY, " +
-                    "Origin INTEGER NULL, " +
-                    "Destination INTEGER NULL, " +
-                    "Message TEXT NULL, " +
-                    "Timestamp Timestamp NULL, " +
-                    "MessageType INTEGER NULL)");
-            put("Members", "CREATE TABLE IF NOT EXISTS Members (" +
-                    "Chat_ID INTEGER, " +
-                    "User_ID INTEGER, " +
-                    "PRIMARY KEY (Chat_ID, User_ID));");
+            migrate(connection, next);
         }
-    };
+    }
 
     /**
-     * Checks if all TABLES in the HashMap 'TABLES' exists.
-     * If a table is missing it will be created.
+     * Reads the schema version of the database
      *
-     * @throws SQLException if database connection is lost or a missing table could not been created
+     * @return schema version, 0 for new or not versioned databases
+     * @throws SQLException database connection lost
      */
-    public static void checkConsistency(Connection connection) throws SQLException
+    public static int getVersion(Connection connection) throws SQLException
     {
-        for (Map.Entry<String, String> entry : TABLES.entrySet())
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("PRAGMA user_version;"))
         {
-            boolean exists = SQLHandler
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        }
+    }
 
-                    .sql("SELECT name FROM sqlite_master WHERE type='table' and name = ?;", entry.getKey())
-                    .executeQuery(ResultSet::next);
+    /**
+     * Runs all statements of a migration and sets the new schema version in one transaction.
+     *
+     * @param version version the database is migrated to
+     * @throws SQLException if a statement failed, the transaction is rolled back
+     */
+    private static void migrate(Connection connection, int version) throws SQLException
+    {
+        boolean autoCommit = connection.getAutoCommit();
+
+        try (Statement statement = connection.createStatement())
+        {
+            connection.setAutoCommit(false);
 
-            if (!exists && !SQLHandler.sql(entry.getValue()).execute())
+            for (String sql : MIGRATIONS[version - 1])
             {
-                throw new SQLException(CREATE_TABLE_ERROR);
+                statement.execute(sql);
             }
+            statement.execute("PRAGMA user_version = " + version + ";");
+
+            connection.commit();
+            logger.info("Database migrated to version " + version);
+        } catch (SQLException e)
+        {
+            connection.rollback();
+            throw new SQLException(MIGRATION_ERROR + version, e);
+        } finally
+        {
+            connection.setAutoCommit(autoCommit);
         }
     }
-}
\ No newline at end of file
+}
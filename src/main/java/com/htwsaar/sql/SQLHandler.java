@@ -4,12 +4,13 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.List;
 
 /**
  * Provides methods to run sql-Queries and statements
  *
  * @author Christopher Jung und Matthias Gessner
- * @version 1.4
+ * @version 2.2
  */
 public class SQLHandler
 {
@@ -38,6 +39,12 @@ public class SQLHandler
         R apply(ResultSet resultSet) throws SQLException;
     }
 
+    @FunctionalInterface
+    private interface StatementFunction<R>
+    {
+        R apply(PreparedStatement statement) throws SQLException;
+    }
+
     private Connection connection;
     private final Object[] params;
     private final String sql;
@@ -61,30 +68,105 @@ public class SQLHandler
     }
 
     /**
-     * Builds an PreparedStatement from {@link SQLHandler#sql} and {@link SQLHandler#params}
+     * Runs the function with the PreparedStatement of {@link SQLHandler#sql}
+     * on a read-only connection, see {@link SQLConnection#read(SQLConnection.ConnectionFunction)}.
+     *
+     * @param function work to be done with the statement
+     * @return result of the function
+     * @throws SQLException database connection lost, wrong sql-Syntax
+     */
+    private <R> R read(StatementFunction<R> function) throws SQLException
+    {
+        if (connection != null)
+        {
+            return withStatement(connection, function);
+        }
+        return SQLConnection.INSTANCE.read(con -> withStatement(con, function));
+    }
+
+    /**
+     * Runs the function with the PreparedStatement of {@link SQLHandler#sql}
+     * in a transaction on the writer connection,
+     * see {@link SQLConnection#write(SQLConnection.ConnectionFunction)}.
+     * The transaction is rolled back if the function fails.
      *
-     * @return PreparedStatement
-     * @throws SQLException database connection lost
+     * @param function work to be done with the statement
+     * @return result of the function
+     * @throws SQLException database connection lost, wrong sql-Syntax
      */
-    private PreparedStatement buildStatement() throws SQLException
+    private <R> R write(StatementFunction<R> function) throws SQLException
     {
-        PreparedStatement statement = null;
+        SQLConnection.ConnectionFunction<R> transaction = con -> {
+            con.setAutoCommit(false);
+            try
+            {
+                R result = withStatement(con, function);
+                con.commit();
+                return result;
+            } catch (SQLException e)
+            {
+                con.rollback();
+                throw e;
+            } finally
+            {
+                con.setAutoCommit(true);
+            }
+        };
 
-        if (connection == null)
+        if (connection != null)
         {
-            connection = SQLConnection.INSTANCE.getConnection();
+            return transaction.apply(connection);
         }
+        return SQLConnection.INSTANCE.write(transaction);
+    }
+
+    /**
+     * Runs the function with the PreparedStatement of {@link SQLHandler#sql}.
+     * The statement is taken from the {@link StatementCache} of the connection
+     * and stays open. Without a cache it is prepared and closed again.
+     *
+     * @param con      connection the statement belongs to
+     * @param function work to be done with the statement
+     * @return result of the function
+     * @throws SQLException database connection lost, wrong sql-Syntax
+     */
+    private <R> R withStatement(Connection con, StatementFunction<R> function) throws SQLException
+    {
+        StatementCache cache = SQLConnection.INSTANCE.getStatementCache(con);
 
-        if (sql != null)
+        if (cache != null)
         {
-            statement = connection.prepareStatement(sql);
+            PreparedStatement statement = cache.prepare(sql);
 
-            for (int i = 0; i < params.length; i++)
+            synchronized (statement)
             {
-                statement.setObject(i + 1, params[i]);
+                //the statement may have been evicted in the meantime
+                if (!statement.isClosed())
+                {
+                    return function.apply(statement);
+                }
             }
         }
-        return statement;
+
+        try (PreparedStatement statement = con.prepareStatement(sql))
+        {
+            return function.apply(statement);
+        }
+    }
+
+    /**
+     * Binds the parameters to the statement.
+     *
+     * @param statement statement of {@link SQLHandler#sql}
+     * @param values    parameter values
+     * @throws SQLException wrong number of parameters
+     */
+    private static void bind(PreparedStatement statement, Object[] values) throws SQLException
+    {
+        for (int i = 0; i < values.length; i++)
+        {
+            statement.setObject(i + 1, values[i]);
+        }
     }
 
     /**
@@ -99,12 +181,14 @@ public class SQLHandler
     {
         try
         {
-            PreparedStatement statement = buildStatement();
-            ResultSet resultSet = statement.executeQuery();
-            R result = sqlResultFunction.apply(resultSet);
-            statement.close(); //noetig? -> Scope
+            return read(statement -> {
+                bind(statement, params);
 
-            return result;
+                try (ResultSet resultSet = statement.executeQuery())
+                {
+                    return sqlResultFunction.apply(resultSet);
+                }
+            });
         } catch (SQLException e)
         {
             return null;
@@ -133,32 +217,140 @@ public class SQLHandler
      */
     public <T> T execute(SQLFunction<T> sqlFunction)
     {
+        try
+        {
+            return write(statement -> {
+                bind(statement, params);
+                statement.execute();
+
+                try (ResultSet keys = statement.getGeneratedKeys())
+                {
+                    return sqlFunction.apply(keys);
+                }
+            });
+        } catch (SQLException e)
+        {
+            return null;
+        }
+    }
 
-        try (PreparedStatement statement = buildStatement())
+    /**
+     * Executes an INSERT and returns the ID of the inserted row. SQLite reports
+     * the last inserted row of the connection as generated key, also if the
+     * statement inserted nothing, so the key is only read if a row was changed.
+     *
+     * @return ID of the inserted row, -1 if no row was inserted, for example
+     * because of {@code ON CONFLICT DO NOTHING}, null on error
+     */
+    public Long executeInsert()
+    {
+        try
+        {
+            return write(statement -> {
+                bind(statement, params);
+                return insert(statement);
+            });
+        } catch (SQLException e)
         {
-            connection.setAutoCommit(false);
-            statement.execute();
-            T result = sqlFunction.apply(statement.getGeneratedKeys());
+            return null;
+        }
+    }
 
-            connection.commit();
-            connection.setAutoCommit(true);
-            return result;
+    /**
+     * Executes the INSERT once for every parameter row in a single transaction,
+     * see {@link SQLHandler#executeInsert()}. Unlike {@link SQLHandler#executeBatch(List)}
+     * the rows are executed one by one, so the ID of every inserted row is known.
+     *
+     * @param rows parameter rows, every row is bound like {@link SQLHandler#params}
+     * @return IDs of the inserted rows, -1 for rows that inserted nothing, null if the rows were not committed
+     */
+    public long[] executeInserts(List<Object[]> rows)
+    {
+        if (rows.isEmpty())
+        {
+            return new long[0];
+        }
 
+        try
+        {
+            return write(statement -> {
+                long[] ids = new long[rows.size()];
+                for (int i = 0; i < ids.length; i++)
+                {
+                    bind(statement, rows.get(i));
+                    ids[i] = insert(statement);
+                }
+                return ids;
+            });
         } catch (SQLException e)
         {
-            try
-            {
-                connection.rollback();
-                connection.setAutoCommit(true);
-            } catch (SQLException e2)
-            {
-                //If rollback fails, the connection will be closed
-                //and so are the changes rollbacked too.
-                SQLConnection.INSTANCE.close();
-            }
+            return null;
+        }
+    }
+
+    private static long insert(PreparedStatement statement) throws SQLException
+    {
+        if (statement.executeUpdate() == 0)
+        {
+            return -1;
+        }
+
+        try (ResultSet keys = statement.getGeneratedKeys())
+        {
+            return keys.next() ? keys.getLong(1) : -1;
+        }
+    }
+
+    /**
+     * Executes the sql-Statement once for every parameter row as one JDBC batch.
+     * All rows are written in a single transaction, so either every row
+     * is committed or none.
+     *
+     * @param rows parameter rows, every row is bound like {@link SQLHandler#params}
+     * @return true if the batch was committed otherwise false
+     */
+    public boolean executeBatch(List<Object[]> rows)
+    {
+        return executeBatchCounts(rows) != null;
+    }
+
+    /**
+     * Executes the sql-Statement like {@link SQLHandler#executeBatch(List)}
+     * and reports how many rows every parameter row changed, for example
+     * 0 for a row skipped by {@code INSERT OR IGNORE}.
+     *
+     * @param rows parameter rows, every row is bound like {@link SQLHandler#params}
+     * @return number of changed rows per parameter row, null if the batch was not committed
+     */
+    public int[] executeBatchCounts(List<Object[]> rows)
+    {
+        if (rows.isEmpty())
+        {
+            return new int[0];
         }
 
-        return null;
+        try
+        {
+            return write(statement -> {
+                try
+                {
+                    for (Object[] row : rows)
+                    {
+                        bind(statement, row);
+                        statement.addBatch();
+                    }
+                    return statement.executeBatch();
+                } catch (SQLException e)
+                {
+                    //the cached statement must not keep the rows of the failed batch
+                    statement.clearBatch();
+                    throw e;
+                }
+            });
+        } catch (SQLException e)
+        {
+            return null;
+        }
     }
 
     /**
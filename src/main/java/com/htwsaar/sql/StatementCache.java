@@ -0,0 +1,128 @@
+package com.htwsaar.sql;
+
+import com.htwsaar.utils.Run;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of prepared statements of one connection, keyed by the sql string.
+ * The least recently used statement is closed when the cache is full.
+ *
+ * @version 1.1
+ */
+public class StatementCache
+{
+    private final Connection connection;
+    private final Statements statements;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * @param connection connection the statements are prepared on
+     * @param capacity   maximal number of cached statements
+     */
+    public StatementCache(Connection connection, int capacity)
+    {
+        this.connection = connection;
+        this.statements = new Statements(capacity);
+    }
+
+    public Connection getConnection()
+    {
+        return connection;
+    }
+
+    /**
+     * Returns the cached statement of the sql string or prepares a new one.
+     * The statement must not be closed by the caller.
+     *
+     * @param sql sql statement
+     * @return prepared statement
+     * @throws SQLException database connection lost, wrong sql-Syntax
+     */
+    public synchronized PreparedStatement prepare(String sql) throws SQLException
+    {
+        PreparedStatement statement = statements.get(sql);
+
+        if (statement != null)
+        {
+            hits++;
+            return statement;
+        }
+
+        misses++;
+        statement = connection.prepareStatement(sql);
+        statements.put(sql, statement);
+        return statement;
+    }
+
+    /**
+     * Closes and removes all cached statements.
+     */
+    public synchronized void clear()
+    {
+        statements.values().forEach(StatementCache::close);
+        statements.clear();
+    }
+
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    public synchronized int size()
+    {
+        return statements.size();
+    }
+
+    private static void close(PreparedStatement statement)
+    {
+        synchronized (statement)
+        {
+            Run.safe(statement::close);
+        }
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "statement cache: " + statements.size() + " statements, " + hits + " hits, " + misses + " misses";
+    }
+
+    /**
+     * Statements in access order, the eldest is closed and removed when the capacity is exceeded
+     */
+    private static class Statements extends LinkedHashMap<String, PreparedStatement>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        private Statements(int capacity)
+        {
+            super(capacity * 2, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest)
+        {
+            if (size() > capacity)
+            {
+                close(eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.htwsaar.sql;
+
+import com.htwsaar.utils.Resources;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+/**
+ * SQLite settings (journal mode, synchronous mode, mmap, page cache, temp store)
+ * read from storage.properties and applied to every new connection.
+ * A {@code sqlite.*} system property overrides the value of the file,
+ * also for keys the file does not contain.
+ *
+ * @version 1.2
+ */
+public class StorageProfile
+{
+    private static final String FILE = "storage.properties";
+
+    private static final String[] PRAGMAS = {"journal_mode", "synchronous", "mmap_size", "cache_size", "temp_store"};
+
+    private final Properties properties;
+
+    private StorageProfile(Properties properties)
+    {
+        this.properties = properties;
+    }
+
+    /**
+     * Loads the profile from storage.properties. Without the file
+     * the SQLite defaults stay in effect.
+     *
+     * @return loaded profile
+     */
+    public static StorageProfile load()
+    {
+        Properties properties = Resources.loadProfile(FILE, "sqlite.");
+        return new StorageProfile(properties);
+    }
+
+    public String getName()
+    {
+        return properties.getProperty("sqlite.profile", "default");
+    }
+
+    /**
+     * @return seconds between WAL checkpoints, 0 if no periodic checkpoint should run
+     */
+    public long getCheckpointInterval()
+    {
+        try
+        {
+            return Long.parseLong(properties.getProperty("sqlite.wal_checkpoint_interval", "0").trim());
+        } catch (NumberFormatException e)
+        {
+            return 0;
+        }
+    }
+
+    /**
+     * Applies all configured pragmas to the connection.
+     *
+     * @param readOnly true for read-only connections, they keep the journal mode of the database
+     * @throws SQLException database connection lost, invalid pragma value
+     */
+    public void apply(Connection connection, boolean readOnly) throws SQLException
+    {
+        try (Statement statement = connection.createStatement())
+        {
+            for (String pragma : PRAGMAS)
+            {
+                if (readOnly && pragma.equals("journal_mode"))
+                {
+                    continue;
+                }
+
+                String value = properties.getProperty("sqlite." + pragma);
+
+                if (value != null && value.trim().matches("[A-Za-z0-9-]+"))
+                {
+                    statement.execute("PRAGMA " + pragma + " = " + value.trim() + ";");
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads back the settings SQLite actually uses. WAL can not be enabled
+     * for every database, so this is the only reliable source.
+     *
+     * @return human readable summary of the settings in effect
+     * @throws SQLException database connection lost
+     */
+    public String report(Connection connection) throws SQLException
+    {
+        StringBuilder report = new StringBuilder("storage profile '").append(getName()).append("':");
+
+        try (Statement statement = connection.createStatement())
+        {
+            for (String pragma : PRAGMAS)
+            {
+                try (ResultSet resultSet = statement.executeQuery("PRAGMA " + pragma + ";"))
+                {
+                    report.append(' ').append(pragma).append('=')
+                            .append(resultSet.next() ? resultSet.getString(1) : "?");
+                }
+            }
+        }
+
+        return report.toString();
+    }
+
+    /**
+     * @return true if the connection writes a write-ahead log
+     * @throws SQLException database connection lost
+     */
+    public static boolean isWal(Connection connection) throws SQLException
+    {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("PRAGMA journal_mode;"))
+        {
+            return resultSet.next() && "wal".equalsIgnoreCase(resultSet.getString(1));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.htwsaar.utils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded executor for blocking database and network work, so it does not
+ * run on the JavaFX application thread. Uses virtual threads if the
+ * runtime supports them, otherwise daemon platform threads.
+ *
+ * @version 1.0
+ */
+public class Async
+{
+    private static final int IO_THREADS = 8;
+    private static final int IO_QUEUE = 1024;
+
+    private static final ExecutorService IO = new ThreadPoolExecutor(
+            IO_THREADS, IO_THREADS, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(IO_QUEUE), threadFactory());
+
+    static
+    {
+        ((ThreadPoolExecutor) IO).allowCoreThreadTimeOut(true);
+    }
+
+    public static ExecutorService io()
+    {
+        return IO;
+    }
+
+    /**
+     * Runs the block on the I/O executor.
+     *
+     * @param block blocking work
+     * @return future of the result, completed exceptionally if the block throws
+     * or the executor is saturated
+     */
+    public static <T> CompletableFuture<T> supply(Run.ResultBlock<T> block)
+    {
+        CompletableFuture<T> future = new CompletableFuture<>();
+
+        try
+        {
+            IO.execute(() -> {
+                try
+                {
+                    future.complete(block.run());
+                } catch (Throwable e)
+                {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e)
+        {
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    /**
+     * Runs the block on the I/O executor.
+     *
+     * @param block blocking work
+     * @return future that completes when the block is done
+     */
+    public static CompletableFuture<Void> run(Run.Block block)
+    {
+        return supply(() -> {
+            block.run();
+            return null;
+        });
+    }
+
+    /**
+     * Creates virtual threads on Java 21+ and named daemon threads otherwise.
+     */
+    private static ThreadFactory threadFactory()
+    {
+        try
+        {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = Class.forName("java.lang.Thread$Builder").getMethod("name", String.class, long.class)
+                    .invoke(builder, "io-", 0L);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e)
+        {
+            AtomicInteger count = new AtomicInteger();
+            return runnable -> {
+                Thread thread = new Thread(runnable, "io-" + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.htwsaar.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread safe histogram with fixed bucket bounds for runtime metrics
+ * like latencies or batch sizes.
+ *
+ * @version 1.0
+ */
+public class Histogram
+{
+    private final String name;
+    private final String unit;
+    private final long[] bounds;
+    private final AtomicLongArray buckets;
+
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param name   name used in {@link #toString()}
+     * @param unit   unit of the recorded values
+     * @param bounds ascending inclusive upper bounds of the buckets,
+     *               larger values are counted in an overflow bucket
+     */
+    public Histogram(String name, String unit, long... bounds)
+    {
+        this.name = name;
+        this.unit = unit;
+        this.bounds = bounds.clone();
+        this.buckets = new AtomicLongArray(bounds.length + 1);
+    }
+
+    public void record(long value)
+    {
+        int index = 0;
+        while (index < bounds.length && value > bounds[index])
+        {
+            index++;
+        }
+
+        buckets.incrementAndGet(index);
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    public long getCount()
+    {
+        return count.get();
+    }
+
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    public double getMean()
+    {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * Returns the upper bound of the bucket that contains the given percentile.
+     *
+     * @param percentile value between 0 and 100
+     * @return bucket bound, or the maximum if the percentile lies in the overflow bucket
+     */
+    public long getPercentile(double percentile)
+    {
+        long n = count.get();
+        if (n == 0)
+        {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(n * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < bounds.length; i++)
+        {
+            seen += buckets.get(i);
+            if (seen >= rank)
+            {
+                return bounds[i];
+            }
+        }
+        return max.get();
+    }
+
+    public void reset()
+    {
+        for (int i = 0; i < buckets.length(); i++)
+        {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s: n=%d mean=%.1f p50<=%d p99<=%d max=%d %s",
+                name, getCount(), getMean(), getPercentile(50), getPercentile(99), getMax(), unit);
+    }
+}
@@ -0,0 +1,195 @@
+package com.htwsaar.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hash map with primitive int keys (open addressing, linear probing).
+ * Avoids the boxing of {@link java.util.HashMap} for ID lookups.
+ * Not thread safe, null values are not allowed.
+ *
+ * @param <V> value type
+ * @version 1.0
+ */
+public class IntMap<V>
+{
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] keys;
+    private Object[] values;
+    private int size;
+
+    public IntMap()
+    {
+        this(MIN_CAPACITY);
+    }
+
+    public IntMap(int expectedSize)
+    {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 < expectedSize * 4)
+        {
+            capacity <<= 1;
+        }
+
+        keys = new int[capacity];
+        values = new Object[capacity];
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key)
+    {
+        int index = indexOf(key);
+        return index < 0 ? null : (V) values[index];
+    }
+
+    public boolean containsKey(int key)
+    {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * @return the previous value of the key or null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value)
+    {
+        if (value == null)
+        {
+            throw new NullPointerException("null values are not supported");
+        }
+
+        int mask = keys.length - 1;
+        int index = hash(key) & mask;
+
+        while (values[index] != null)
+        {
+            if (keys[index] == key)
+            {
+                V old = (V) values[index];
+                values[index] = value;
+                return old;
+            }
+            index = (index + 1) & mask;
+        }
+
+        keys[index] = key;
+        values[index] = value;
+        size++;
+
+        if (size * 4 > keys.length * 3)
+        {
+            resize(keys.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * @return the removed value or null
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key)
+    {
+        int index = indexOf(key);
+        if (index < 0)
+        {
+            return null;
+        }
+
+        V old = (V) values[index];
+        values[index] = null;
+        size--;
+
+        //shift the following entries of the probe sequence back
+        int mask = keys.length - 1;
+        int free = index;
+        int next = (index + 1) & mask;
+
+        while (values[next] != null)
+        {
+            int home = hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - free) & mask))
+            {
+                keys[free] = keys[next];
+                values[free] = values[next];
+                values[next] = null;
+                free = next;
+            }
+            next = (next + 1) & mask;
+        }
+
+        return old;
+    }
+
+    public void clear()
+    {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<V> values()
+    {
+        List<V> result = new ArrayList<>(size);
+        for (Object value : values)
+        {
+            if (value != null)
+            {
+                result.add((V) value);
+            }
+        }
+        return result;
+    }
+
+    private int indexOf(int key)
+    {
+        int mask = keys.length - 1;
+        int index = hash(key) & mask;
+
+        while (values[index] != null)
+        {
+            if (keys[index] == key)
+            {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void resize(int capacity)
+    {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+
+        keys = new int[capacity];
+        values = new Object[capacity];
+        size = 0;
+
+        for (int i = 0; i < oldKeys.length; i++)
+        {
+            if (oldValues[i] != null)
+            {
+                put(oldKeys[i], (V) oldValues[i]);
+            }
+        }
+    }
+
+    private static int hash(int key)
+    {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
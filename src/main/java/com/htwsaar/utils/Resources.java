@@ -1,11 +1,58 @@
 package com.htwsaar.utils;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.util.Properties;
+import java.util.logging.Logger;
 
 public class Resources
 {
+    private static final Logger logger = Logger.getLogger(Resources.class.getName());
+
     public static URL get(String name)
     {
         return Resources.class.getClassLoader().getResource(name);
     }
+
+    /**
+     * Reads a properties file of the class path. Every system property starting
+     * with one of the prefixes overrides the value of the file, also for keys
+     * the file does not contain. A missing or unreadable file leaves only the
+     * system properties.
+     *
+     * @param name     name of the properties file
+     * @param prefixes prefixes of the keys of the profile
+     * @return values of the file and the overriding system properties
+     */
+    public static Properties loadProfile(String name, String... prefixes)
+    {
+        Properties properties = new Properties();
+        URL url = get(name);
+
+        if (url != null)
+        {
+            try (InputStream in = url.openStream())
+            {
+                properties.load(in);
+            } catch (IOException e)
+            {
+                logger.warning("Could not read " + name + ": " + e.getMessage());
+            }
+        }
+
+        for (String key : System.getProperties().stringPropertyNames())
+        {
+            for (String prefix : prefixes)
+            {
+                if (key.startsWith(prefix))
+                {
+                    properties.setProperty(key, System.getProperty(key));
+                    break;
+                }
+            }
+        }
+
+        return properties;
+    }
 }
@@ -32,7 +32,8 @@ public class SceneSwitcher
             transition2.setDuration(Duration.millis(1000));
             transition2.play();
 
-            stage.setScene(new Scene(newScene,oldScene.getWidth(),oldScene.getHeight()));
+            //Reuse the scene, so the old root is detached and can be shown again later
+            oldScene.setRoot(newScene);
             stage.show();
 
 
@@ -0,0 +1,75 @@
+package com.htwsaar;
+
+import com.htwsaar.container.Group;
+import com.htwsaar.container.Message;
+import com.htwsaar.container.User;
+import com.htwsaar.logic.GroupLogic;
+import com.htwsaar.logic.SyncLogic;
+import com.htwsaar.logic.UserLogic;
+import com.htwsaar.sql.SQLHandler;
+import com.htwsaar.sql.TestDatabase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Ingest of received messages without chat view and without server connection.
+ */
+public class CoordinatorTest
+{
+    private static final String DATABASE = "junit-coordinator";
+
+    private Coordinator coordinator;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        TestDatabase.open(DATABASE);
+        User.ME = new User(1, "anna");
+        UserLogic.INSTANCE.upsertUsers(Arrays.asList(User.ME, new User(2, "ben")));
+        GroupLogic.INSTANCE.upsertGroup(new Group(3, "mensa", 1));
+        coordinator = new Coordinator();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        TestDatabase.close(DATABASE);
+    }
+
+    private static int count()
+    {
+        return SQLHandler.sql("SELECT COUNT(*) FROM Messages;").executeQuery(rs -> rs.getInt(1));
+    }
+
+    @Test
+    public void storesBatchWithoutChatView()
+    {
+        coordinator.onNewMessages(new Message[]{
+                new Message(1, 2, 1, "hallo", 1000, 0),
+                new Message(2, 2, 3, "gruppe", 2000, 1)});
+        coordinator.onNewMessages(new Message[]{new Message(2, 2, 3, "gruppe", 2000, 1)});
+
+        assertEquals(2, count());
+        assertEquals(2, SyncLogic.INSTANCE.selectCursor(1).getServerID());
+    }
+
+    @Test
+    public void poisonMessageDoesNotStallTheBatch()
+    {
+        SQLHandler.sql("CREATE TRIGGER Poison BEFORE INSERT ON Messages WHEN new.Message = 'poison' " +
+                "BEGIN SELECT RAISE(ABORT, 'poison'); END;").execute();
+
+        coordinator.onNewMessages(new Message[]{
+                new Message(1, 2, 1, "vorher", 1000, 0),
+                new Message(2, 2, 1, "poison", 2000, 0),
+                new Message(3, 2, 1, "nachher", 3000, 0)});
+
+        assertEquals(2, count());
+        assertEquals(3, SyncLogic.INSTANCE.selectCursor(1).getServerID());
+    }
+}
@@ -0,0 +1,66 @@
+package com.htwsaar.controller;
+
+import com.htwsaar.container.Group;
+import com.htwsaar.container.User;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class RecipientModelTest
+{
+    private final RecipientModel model = new RecipientModel();
+
+    @Test
+    public void mergeSortsBySnapshotActivity()
+    {
+        User alice = new User(1, "alice");
+        User bob = new User(2, "bob");
+        Group team = new Group(1, "team", 1);
+
+        Map<Long, Long> activity = new HashMap<>();
+        activity.put(RecipientModel.key(RecipientModel.USER, 2), 200L);
+        activity.put(RecipientModel.key(RecipientModel.GROUP, 1), 100L);
+        model.merge(Arrays.asList(alice, bob, team, alice), activity);
+
+        assertEquals(Arrays.asList(bob, team, alice), model.getItems());
+    }
+
+    @Test
+    public void mergeKeepsRecipientsPutAfterTheSnapshot()
+    {
+        User renamed = new User(1, "alicia");
+        User carol = new User(3, "carol");
+        model.put(renamed);
+        model.put(carol);
+        model.touch(RecipientModel.USER, 3, 500L);
+
+        //snapshot taken before the rename and the new message of carol
+        Map<Long, Long> activity = new HashMap<>();
+        activity.put(RecipientModel.key(RecipientModel.USER, 1), 300L);
+        activity.put(RecipientModel.key(RecipientModel.USER, 3), 100L);
+        model.merge(Arrays.asList(new User(1, "alice"), new User(2, "bob")), activity);
+
+        assertEquals(3, model.getItems().size());
+        assertSame(renamed, model.get(RecipientModel.USER, 1));
+        assertSame(carol, model.getItems().get(0));
+        assertSame(renamed, model.getItems().get(1));
+        assertEquals("bob", ((User) model.getItems().get(2)).getName());
+    }
+
+    @Test
+    public void setAllReplacesTheList()
+    {
+        model.put(new User(1, "alice"));
+        model.setAll(Collections.emptyList(), Collections.emptyMap());
+
+        assertEquals(0, model.getItems().size());
+        model.merge(Collections.singletonList(new User(2, "bob")), Collections.emptyMap());
+        assertEquals(1, model.getItems().size());
+    }
+}
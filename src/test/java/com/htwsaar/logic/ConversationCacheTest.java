@@ -0,0 +1,152 @@
+package com.htwsaar.logic;
+
+import com.htwsaar.container.Message;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ConversationCacheTest
+{
+    private static final int ME = 1;
+
+    /**
+     * Estimated size of a message with a text of one char, see ConversationCache#sizeOf
+     */
+    private static final long SIZE = 88 + 2;
+
+    private static Message message(int id, int origin, int destination, long time)
+    {
+        Message message = new Message(id, origin, destination, "x", time, 0);
+        message.setLocalId(id);
+        return message;
+    }
+
+    private static List<Message> page(int partner, int first, int count)
+    {
+        List<Message> page = new ArrayList<>();
+        for (int id = first; id < first + count; id++)
+        {
+            page.add(message(id, partner, ME, id * 1000L));
+        }
+        return page;
+    }
+
+    private static List<Integer> ids(List<Message> messages)
+    {
+        List<Integer> ids = new ArrayList<>();
+        messages.forEach(message -> ids.add(message.getId()));
+        return ids;
+    }
+
+    @Test
+    public void putKeepsTheNewestMessagesOfAPage()
+    {
+        ConversationCache cache = new ConversationCache(3, 100, Long.MAX_VALUE);
+        cache.put(0, 2, page(2, 1, 5), cache.version());
+
+        assertEquals(Arrays.asList(3, 4, 5), ids(cache.get(0, 2)));
+        assertEquals(3, cache.getMessageCount());
+        assertEquals(3 * SIZE, cache.getByteSize());
+    }
+
+    @Test
+    public void appendGoesToCachedPagesOnly()
+    {
+        ConversationCache cache = new ConversationCache(3, 100, Long.MAX_VALUE);
+        cache.put(0, 2, page(2, 1, 3), cache.version());
+
+        cache.append(Arrays.asList(message(10, 2, ME, 10_000), message(11, 3, ME, 11_000),
+                message(12, ME, 2, 12_000)), ME);
+
+        assertEquals(Arrays.asList(3, 10, 12), ids(cache.get(0, 2)));
+        assertNull(cache.get(0, 3));
+        assertEquals(3, cache.getMessageCount());
+        assertEquals(3 * SIZE, cache.getByteSize());
+    }
+
+    @Test
+    public void appendOrdersTiesByLocalID()
+    {
+        ConversationCache cache = new ConversationCache(10, 100, Long.MAX_VALUE);
+        cache.put(0, 2, Collections.singletonList(message(5, 2, ME, 1000)), cache.version());
+
+        cache.append(Arrays.asList(message(7, 2, ME, 1000), message(6, 2, ME, 1000), message(4, 2, ME, 1000)), ME);
+
+        assertEquals(Arrays.asList(4, 5, 6, 7), ids(cache.get(0, 2)));
+    }
+
+    @Test
+    public void pageLoadedBeforeAnAppendIsDropped()
+    {
+        ConversationCache cache = new ConversationCache(10, 100, Long.MAX_VALUE);
+        long version = cache.version();
+        cache.append(Collections.singletonList(message(10, 2, ME, 10_000)), ME);
+        cache.put(0, 2, page(2, 1, 3), version);
+
+        assertNull(cache.get(0, 2));
+        assertEquals(0, cache.getMessageCount());
+        assertEquals(0, cache.getByteSize());
+    }
+
+    @Test
+    public void forgottenAppendsStillDropOlderPages()
+    {
+        //keeps the appends of two conversations
+        ConversationCache cache = new ConversationCache(10, 20, Long.MAX_VALUE);
+        long version = cache.version();
+        cache.append(Collections.singletonList(message(10, 2, ME, 10_000)), ME);
+        cache.append(Arrays.asList(message(11, 3, ME, 11_000), message(12, 4, ME, 12_000)), ME);
+
+        cache.put(0, 2, page(2, 1, 3), version);
+        assertNull(cache.get(0, 2));
+        cache.put(0, 5, page(5, 1, 3), version);
+        assertNull(cache.get(0, 5));
+
+        long later = cache.version();
+        cache.append(Collections.singletonList(message(13, 6, ME, 13_000)), ME);
+        cache.put(0, 2, page(2, 1, 3), later);
+        assertEquals(3, ids(cache.get(0, 2)).size());
+        cache.put(0, 3, page(3, 1, 3), later);
+        assertEquals(3, ids(cache.get(0, 3)).size());
+    }
+
+    @Test
+    public void leastRecentlyUsedPagesAreEvictedByMessageCount()
+    {
+        ConversationCache cache = new ConversationCache(10, 6, Long.MAX_VALUE);
+        cache.put(0, 2, page(2, 1, 3), cache.version());
+        cache.put(0, 3, page(3, 11, 3), cache.version());
+        cache.get(0, 2);
+        cache.put(0, 4, page(4, 21, 3), cache.version());
+
+        assertEquals(3, ids(cache.get(0, 2)).size());
+        assertNull(cache.get(0, 3));
+        assertEquals(3, ids(cache.get(0, 4)).size());
+        assertEquals(6, cache.getMessageCount());
+        assertEquals(6 * SIZE, cache.getByteSize());
+    }
+
+    @Test
+    public void pagesAreEvictedByByteSize()
+    {
+        ConversationCache cache = new ConversationCache(10, 100, 5 * SIZE);
+        cache.put(0, 2, page(2, 1, 3), cache.version());
+        cache.put(0, 3, page(3, 11, 3), cache.version());
+
+        assertNull(cache.get(0, 2));
+        assertEquals(3, cache.getMessageCount());
+        assertEquals(3 * SIZE, cache.getByteSize());
+
+        cache.append(Arrays.asList(message(14, 3, ME, 14_000), message(15, 3, ME, 15_000),
+                message(16, 3, ME, 16_000)), ME);
+        assertNull(cache.get(0, 3));
+        assertEquals(0, cache.getMessageCount());
+        assertEquals(0, cache.getByteSize());
+    }
+}
@@ -0,0 +1,68 @@
+package com.htwsaar.logic;
+
+import com.htwsaar.container.User;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class IdentityCacheTest
+{
+    private final IdentityCache<User> users = new IdentityCache<>(User::getID, User::getName);
+
+    @Test
+    public void entriesAreFoundByIDAndName()
+    {
+        User alice = new User(1, "alice");
+        users.load(Arrays.asList(alice, new User(2, "bob")));
+
+        assertTrue(users.isLoaded());
+        assertSame(alice, users.get(1));
+        assertSame(alice, users.get("alice"));
+        assertEquals(2, users.values().size());
+        assertNull(users.get(3));
+        assertNull(users.get((String) null));
+    }
+
+    @Test
+    public void renameDropsTheOldName()
+    {
+        users.put(new User(1, "alice"));
+        users.put(new User(1, "alicia"));
+
+        assertNull(users.get("alice"));
+        assertEquals(1, users.get("alicia").getID());
+        assertEquals(1, users.values().size());
+    }
+
+    @Test
+    public void removeByIDOrNameRemovesBothIndexes()
+    {
+        users.put(new User(1, "alice"));
+        users.put(new User(2, "bob"));
+        users.put(new User(3, null));
+
+        users.remove(1);
+        users.remove("bob");
+        users.remove(3);
+
+        assertNull(users.get("alice"));
+        assertNull(users.get(2));
+        assertTrue(users.values().isEmpty());
+    }
+
+    @Test
+    public void failedLoadLeavesTheCacheUnloaded()
+    {
+        users.load(Arrays.asList(new User(1, "alice")));
+        users.load(null);
+
+        assertFalse(users.isLoaded());
+        assertNull(users.get(1));
+    }
+}
@@ -0,0 +1,161 @@
+package com.htwsaar.logic;
+
+import com.htwsaar.container.Message;
+import com.htwsaar.sql.SQLHandler;
+import com.htwsaar.sql.TestDatabase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the ingest, upsert and search statements against the pinned sqlite-jdbc driver.
+ */
+public class MessageLogicTest
+{
+    private static final String DATABASE = "junit-messages";
+
+    @Before
+    public void setUp() throws Exception
+    {
+        TestDatabase.open(DATABASE);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        TestDatabase.close(DATABASE);
+    }
+
+    private static Message message(int serverID, String text, long time)
+    {
+        return new Message(serverID, 2, 1, text, time, 0);
+    }
+
+    private static String textOf(int serverID)
+    {
+        return SQLHandler
+                .sql("SELECT Message FROM Messages WHERE ServerID = ?;", serverID)
+                .executeQuery(rs -> rs.next() ? rs.getString(1) : null);
+    }
+
+    private static int count()
+    {
+        return SQLHandler
+                .sql("SELECT COUNT(*) FROM Messages;")
+                .executeQuery(rs -> rs.getInt(1));
+    }
+
+    @Test
+    public void insertMessageReturnsMinusOneForStoredServerID() throws Exception
+    {
+        long first = MessageLogic.INSTANCE.insertMessage(message(10, "hallo", 1000));
+        MessageLogic.INSTANCE.insertMessage(message(11, "welt", 2000));
+
+        assertTrue(first > 0);
+        assertEquals(-1, MessageLogic.INSTANCE.insertMessage(message(10, "hallo", 1000)));
+        assertEquals(2, count());
+    }
+
+    @Test
+    public void insertNewMessagesSkipsStoredServerIDs()
+    {
+        MessageLogic.INSTANCE.insertNewMessages(Arrays.asList(message(1, "a", 1), message(2, "b", 2)));
+
+        List<Message> stored = MessageLogic.INSTANCE.insertNewMessages(
+                Arrays.asList(message(2, "b", 2), message(3, "c", 3), message(3, "c", 3)));
+
+        assertNotNull(stored);
+        assertEquals(1, stored.size());
+        assertEquals(3, stored.get(0).getId());
+        assertEquals(3, count());
+    }
+
+    @Test
+    public void messagesWithoutServerIDAreNeverSkipped()
+    {
+        MessageLogic.INSTANCE.insertNewMessages(Arrays.asList(message(-1, "a", 1), message(0, "a", 1)));
+
+        assertEquals(2, count());
+    }
+
+    @Test
+    public void upsertUpdatesOnlyTheGivenServerID()
+    {
+        MessageLogic.INSTANCE.insertNewMessages(Arrays.asList(message(5, "alt", 1), message(6, "andere", 2)));
+
+        assertTrue(MessageLogic.INSTANCE.upsertMessage(5, message(999, "neu", 1)));
+        assertEquals("neu", textOf(5));
+        assertEquals("andere", textOf(6));
+
+        Map<Integer, Message> batch = new LinkedHashMap<>();
+        batch.put(6, message(0, "geändert", 2));
+        batch.put(7, message(0, "dazu", 3));
+        assertTrue(MessageLogic.INSTANCE.upsertMessages(batch));
+
+        assertEquals("geändert", textOf(6));
+        assertEquals("dazu", textOf(7));
+        assertEquals(3, count());
+    }
+
+    @Test
+    public void searchFindsWordsAndPrefixes()
+    {
+        MessageLogic.INSTANCE.insertNewMessages(Arrays.asList(
+                message(1, "Treffen in der Mensa", 1),
+                message(2, "Mensa ist heute zu", 2),
+                message(3, "Klausur morgen", 3)));
+
+        List<SearchHit> mensa = MessageLogic.INSTANCE.searchMessages("mensa", SearchCursor.FIRST, 10);
+        List<SearchHit> prefix = MessageLogic.INSTANCE.searchMessages("klau", SearchCursor.FIRST, 10);
+        List<SearchHit> syntax = MessageLogic.INSTANCE.searchMessages("mensa\" OR *", SearchCursor.FIRST, 10);
+
+        assertEquals(2, mensa.size());
+        assertEquals(1, prefix.size());
+        assertEquals(3, prefix.get(0).getMessage().getId());
+        assertNotNull(syntax);
+        assertNotEquals(-1, mensa.get(0).getSnippet().indexOf('['));
+    }
+
+    @Test
+    public void pagesBreakTiesWithTheLocalIDOfReceivedMessages()
+    {
+        //server IDs in the opposite order of the local row IDs, all with the same time
+        List<Message> stored = MessageLogic.INSTANCE.insertNewMessages(Arrays.asList(
+                message(50, "a", 1000), message(40, "b", 1000), message(30, "c", 1000),
+                message(20, "d", 1000), message(10, "e", 1000)));
+
+        Message newest = stored.get(stored.size() - 1);
+        assertTrue(newest.getLocalId() > 0);
+
+        List<Message> older = MessageLogic.INSTANCE.getMessagesFromUser(2, HistoryCursor.before(newest), 10);
+        assertEquals(Arrays.asList(50, 40, 30, 20), serverIDs(older));
+
+        List<Message> newer = MessageLogic.INSTANCE.getMessagesFromUser(2, HistoryCursor.after(older.get(1)), 2);
+        assertEquals(Arrays.asList(30, 20), serverIDs(newer));
+
+        List<Message> latest = MessageLogic.INSTANCE.getMessagesFromUser(2, HistoryCursor.LATEST, 2);
+        assertEquals(Arrays.asList(20, 10), serverIDs(latest));
+        assertEquals(newest.getLocalId(), latest.get(1).getLocalId());
+    }
+
+    private static List<Integer> serverIDs(List<Message> messages)
+    {
+        List<Integer> ids = new ArrayList<>();
+        for (Message message : messages)
+        {
+            ids.add(message.getId());
+        }
+        return ids;
+    }
+}
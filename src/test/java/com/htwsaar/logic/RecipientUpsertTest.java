@@ -0,0 +1,60 @@
+package com.htwsaar.logic;
+
+import com.htwsaar.container.Group;
+import com.htwsaar.container.User;
+import com.htwsaar.sql.SQLHandler;
+import com.htwsaar.sql.TestDatabase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the user and group upserts against the pinned sqlite-jdbc driver.
+ */
+public class RecipientUpsertTest
+{
+    private static final String DATABASE = "junit-recipients";
+
+    @Before
+    public void setUp() throws Exception
+    {
+        TestDatabase.open(DATABASE);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        TestDatabase.close(DATABASE);
+    }
+
+    private static String stored(String sql, int id)
+    {
+        return SQLHandler.sql(sql, id).executeQuery(rs -> rs.next() ? rs.getString(1) : null);
+    }
+
+    @Test
+    public void upsertUserInsertsAndRenames()
+    {
+        assertTrue(UserLogic.INSTANCE.upsertUser(new User(1, "anna")));
+        assertTrue(UserLogic.INSTANCE.upsertUser(new User(1, "anna")));
+        assertTrue(UserLogic.INSTANCE.upsertUsers(Arrays.asList(new User(1, "anne"), new User(2, "ben"))));
+
+        assertEquals("anne", stored("SELECT Name FROM Users WHERE ID = ?;", 1));
+        assertEquals("ben", stored("SELECT Name FROM Users WHERE ID = ?;", 2));
+    }
+
+    @Test
+    public void upsertGroupUpdatesNameAndCreator()
+    {
+        assertTrue(GroupLogic.INSTANCE.upsertGroup(new Group(3, "mensa", 1)));
+        assertTrue(GroupLogic.INSTANCE.upsertGroups(Arrays.asList(new Group(3, "mensa", 2), new Group(4, "lerngruppe", 1))));
+
+        assertEquals("2", stored("SELECT Creator FROM Groups WHERE ID = ?;", 3));
+        assertEquals("lerngruppe", stored("SELECT Name FROM Groups WHERE ID = ?;", 4));
+    }
+}
@@ -0,0 +1,45 @@
+package com.htwsaar.logic;
+
+import com.htwsaar.container.Message;
+import com.htwsaar.sql.TestDatabase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SyncLogicTest
+{
+    private static final String DATABASE = "junit-sync";
+
+    @Before
+    public void setUp() throws Exception
+    {
+        TestDatabase.open(DATABASE);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        TestDatabase.close(DATABASE);
+    }
+
+    @Test
+    public void cursorIsCreatedAndNeverMovesBack()
+    {
+        assertTrue(SyncLogic.INSTANCE.selectCursor(1).isNone());
+
+        assertTrue(SyncLogic.INSTANCE.advance(1, Arrays.asList(
+                new Message(5, 2, 1, "a", 5000, 0), new Message(7, 2, 1, "b", 4000, 0))));
+        assertTrue(SyncLogic.INSTANCE.advance(1, Collections.singletonList(new Message(6, 2, 1, "c", 9000, 0))));
+
+        SyncCursor cursor = SyncLogic.INSTANCE.selectCursor(1);
+        assertEquals(7, cursor.getServerID());
+        assertEquals(9000, cursor.getTimestamp());
+        assertTrue(SyncLogic.INSTANCE.selectCursor(2).isNone());
+    }
+}
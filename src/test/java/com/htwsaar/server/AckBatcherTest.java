@@ -0,0 +1,104 @@
+package com.htwsaar.server;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AckBatcherTest
+{
+    @Test
+    public void sendsFullBatchAtOnce()
+    {
+        List<int[]> sent = new ArrayList<>();
+        AckBatcher batcher = new AckBatcher(sent::add, 3, 60_000);
+
+        batcher.add(1);
+        batcher.add(2);
+        assertTrue(sent.isEmpty());
+
+        batcher.add(3);
+        assertEquals(1, sent.size());
+        assertEquals(3, sent.get(0).length);
+        batcher.close();
+    }
+
+    @Test
+    public void closeSendsPendingAndRejectsLaterIDs()
+    {
+        List<int[]> sent = new ArrayList<>();
+        AckBatcher batcher = new AckBatcher(sent::add, 10, 60_000);
+
+        batcher.add(7);
+        batcher.close();
+
+        assertEquals(1, sent.size());
+        assertEquals(7, sent.get(0)[0]);
+        assertFalse(batcher.add(8));
+    }
+
+    @Test
+    public void concurrentAddsSendEveryIDOnce() throws Exception
+    {
+        int threads = 16;
+        int perThread = 20_000;
+        int maxBatch = 2;
+
+        ConcurrentLinkedQueue<int[]> sent = new ConcurrentLinkedQueue<>();
+        AckBatcher batcher = new AckBatcher(sent::add, maxBatch, 1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++)
+        {
+            int first = t * perThread;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++)
+                {
+                    assertTrue(batcher.add(first + i));
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures)
+        {
+            //rethrows an exception of add, e.g. an ArrayIndexOutOfBoundsException
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        batcher.close();
+
+        List<Integer> ids = new ArrayList<>();
+        for (int[] batch : sent)
+        {
+            assertTrue(batch.length <= maxBatch);
+            for (int id : batch)
+            {
+                ids.add(id);
+            }
+        }
+
+        Collections.sort(ids);
+        assertEquals(threads * perThread, ids.size());
+        for (int i = 0; i < ids.size(); i++)
+        {
+            assertEquals(i, (int) ids.get(i));
+        }
+    }
+}
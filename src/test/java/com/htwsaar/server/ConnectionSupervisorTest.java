@@ -0,0 +1,87 @@
+package com.htwsaar.server;
+
+import org.junit.Test;
+import org.springframework.messaging.simp.stomp.StompSession;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectionSupervisorTest
+{
+    /**
+     * Session that only knows whether it is connected
+     */
+    private static StompSession session(AtomicBoolean connected)
+    {
+        return (StompSession) Proxy.newProxyInstance(StompSession.class.getClassLoader(),
+                new Class<?>[]{StompSession.class}, (proxy, method, args) -> {
+                    switch (method.getName())
+                    {
+                        case "isConnected":
+                            return connected.get();
+                        case "disconnect":
+                            connected.set(false);
+                            return null;
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    @Test(timeout = 10_000)
+    public void closeDoesNotWaitForAReconnectAndDropsItsSession() throws Exception
+    {
+        AtomicBoolean first = new AtomicBoolean(true);
+        AtomicBoolean second = new AtomicBoolean(true);
+        CountDownLatch connecting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch connected = new CountDownLatch(2);
+
+        ConnectionSupervisor supervisor = new ConnectionSupervisor(() -> {
+            connected.countDown();
+            if (connected.getCount() == 0)
+            {
+                connecting.countDown();
+                //close() interrupts the reconnect thread, a connect may still finish
+                while (true)
+                {
+                    try
+                    {
+                        release.await();
+                        break;
+                    } catch (InterruptedException ignored)
+                    {
+                    }
+                }
+                return session(second);
+            }
+            return session(first);
+        }, reconnected -> {
+            throw new AssertionError("Reconnected after close");
+        }, new Liveness(), 1, 1);
+
+        StompSession lost = supervisor.start();
+        supervisor.connectionLost(lost, null);
+        assertTrue(connecting.await(5, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        supervisor.close();
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assertEquals(ConnectionSupervisor.State.CLOSED, supervisor.getState());
+
+        release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (second.get() && System.nanoTime() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        assertFalse("session of the late reconnect is still open", second.get());
+        assertEquals(ConnectionSupervisor.State.CLOSED, supervisor.getState());
+    }
+}
@@ -0,0 +1,133 @@
+package com.htwsaar.server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.htwsaar.container.Message;
+import com.htwsaar.logic.SyncCursor;
+import com.htwsaar.server.codec.BinaryCodec;
+import com.htwsaar.server.codec.BinaryMessageConverter;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Negotiates the codec with a {@link StubBroker} and exchanges frames
+ * through the real STOMP client, SockJS transport included.
+ */
+public class ServerConnectionCodecTest
+{
+    private static final Message[] BACKLOG = {
+            new Message(1, 2, 1, "hello", 1_530_000_000_000L, 0),
+            new Message(300, 3, 7, "grüße ✓ 😀", 1_530_000_123_456L, 1),
+            new Message(70_000, 2, 1, null, Message.NO_TIME, 0)
+    };
+    private static final int[] CONFIRMED = {1, 300, 70_000, 200_000_000};
+
+    private final String host = ServerConnection.HOST;
+    private StubBroker broker;
+
+    @After
+    public void tearDown() throws Exception
+    {
+        ServerConnection.INSTANCE.close();
+        ServerConnection.HOST = host;
+        if (broker != null)
+        {
+            broker.close();
+        }
+    }
+
+    @Test
+    public void binaryCodecIsUsedIfTheServerAcceptsIt() throws Exception
+    {
+        broker = new StubBroker(true, BACKLOG);
+        List<Message> received = connectAndReceive();
+
+        StompHeaderAccessor connect = StompHeaderAccessor.wrap(broker.next(StompCommand.CONNECT));
+        assertEquals("binary", connect.getFirstNativeHeader("wave-codec"));
+        assertMessages(received);
+
+        assertTrue(ServerConnection.INSTANCE.sendConfirmations(CONFIRMED));
+        org.springframework.messaging.Message<byte[]> send = nextSend("/app/received");
+        assertTrue(BinaryMessageConverter.BINARY.includes(StompHeaderAccessor.wrap(send).getContentType()));
+        assertArrayEquals(CONFIRMED, BinaryCodec.decode(send.getPayload(), int[].class));
+    }
+
+    @Test
+    public void jsonIsUsedIfTheServerIgnoresTheOffer() throws Exception
+    {
+        broker = new StubBroker(false, BACKLOG);
+        List<Message> received = connectAndReceive();
+
+        StompHeaderAccessor connect = StompHeaderAccessor.wrap(broker.next(StompCommand.CONNECT));
+        assertEquals("binary", connect.getFirstNativeHeader("wave-codec"));
+        assertMessages(received);
+
+        assertTrue(ServerConnection.INSTANCE.sendConfirmations(CONFIRMED));
+        org.springframework.messaging.Message<byte[]> send = nextSend("/app/received");
+        assertTrue(MimeTypeUtils.APPLICATION_JSON.includes(StompHeaderAccessor.wrap(send).getContentType()));
+        assertArrayEquals(CONFIRMED, new ObjectMapper().readValue(send.getPayload(), int[].class));
+    }
+
+    private List<Message> connectAndReceive() throws Exception
+    {
+        ServerConnection.HOST = broker.url();
+        assertTrue(ServerConnection.INSTANCE.connect("alice", "secret"));
+
+        List<Message> received = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(1);
+        ServerConnection.INSTANCE.subscribeMessage(chunk -> {
+            received.addAll(Arrays.asList(chunk));
+            if (received.size() >= BACKLOG.length)
+            {
+                done.countDown();
+            }
+        }, () -> SyncCursor.NONE);
+
+        assertTrue("backlog not received", done.await(10, TimeUnit.SECONDS));
+        return received;
+    }
+
+    private org.springframework.messaging.Message<byte[]> nextSend(String destination) throws InterruptedException
+    {
+        org.springframework.messaging.Message<byte[]> frame;
+        while ((frame = broker.next(StompCommand.SEND)) != null)
+        {
+            if (destination.equals(StompHeaderAccessor.wrap(frame).getDestination()))
+            {
+                return frame;
+            }
+        }
+        throw new AssertionError("No frame sent to " + destination);
+    }
+
+    private static void assertMessages(List<Message> received)
+    {
+        assertEquals(BACKLOG.length, received.size());
+        for (int i = 0; i < BACKLOG.length; i++)
+        {
+            Message expected = BACKLOG[i];
+            Message actual = received.get(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getOrigin(), actual.getOrigin());
+            assertEquals(expected.getDestination(), actual.getDestination());
+            assertEquals(expected.getMessageType(), actual.getMessageType());
+            assertEquals(expected.getTimeMillis(), actual.getTimeMillis());
+            assertEquals(expected.getMessage(), actual.getMessage());
+        }
+        assertNull(received.get(2).getTimestamp());
+    }
+}
@@ -0,0 +1,72 @@
+package com.htwsaar.server;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SingleFlightTest
+{
+    private final SingleFlight<String, String> names = new SingleFlight<>(60_000);
+    private final List<CompletableFuture<String>> requests = new ArrayList<>();
+
+    private CompletableFuture<String> load()
+    {
+        CompletableFuture<String> request = new CompletableFuture<>();
+        requests.add(request);
+        return request;
+    }
+
+    @Test
+    public void concurrentLookupsShareOneRequest()
+    {
+        List<String> results = new ArrayList<>();
+        names.request("alice", results::add, this::load);
+        names.request("alice", results::add, this::load);
+
+        assertEquals(1, requests.size());
+        requests.get(0).complete("Alice");
+        assertEquals(2, results.size());
+        assertEquals("Alice", results.get(1));
+    }
+
+    @Test
+    public void unknownNameIsRemembered()
+    {
+        List<String> results = new ArrayList<>();
+        names.request("bob", results::add, this::load);
+        requests.get(0).complete(null);
+
+        names.request("bob", results::add, this::load);
+        assertEquals(1, requests.size());
+        assertEquals(2, results.size());
+        assertNull(results.get(1));
+
+        names.forget("bob");
+        names.request("bob", results::add, this::load);
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    public void failedRequestIsNotTakenForAnUnknownName()
+    {
+        List<String> results = new ArrayList<>();
+        names.request("carol", results::add, this::load);
+        names.request("carol", results::add, this::load);
+        requests.get(0).completeExceptionally(new TimeoutException());
+
+        assertEquals(2, results.size());
+        assertNull(results.get(0));
+        assertNull(results.get(1));
+
+        names.request("carol", results::add, this::load);
+        assertEquals(2, requests.size());
+        requests.get(1).complete("Carol");
+        assertEquals("Carol", results.get(2));
+    }
+}
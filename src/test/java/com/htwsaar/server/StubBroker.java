@@ -0,0 +1,235 @@
+package com.htwsaar.server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.htwsaar.server.codec.BinaryCodec;
+import com.htwsaar.server.codec.BinaryMessageConverter;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.websocket.server.WsSci;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompDecoder;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.socket.sockjs.support.SockJsHttpRequestHandler;
+import org.springframework.web.socket.sockjs.transport.handler.DefaultSockJsService;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Minimal STOMP server over SockJS on an embedded Tomcat, just enough for
+ * {@link ServerConnection}: it answers CONNECT, remembers the subscriptions,
+ * records every SEND and replies to {@code /app/receive} with the backlog as
+ * one MESSAGE frame to {@code /user/queue/messages}, binary if the codec was
+ * negotiated and JSON otherwise.
+ * <p>
+ * Like a Spring server behind SockJS it sends and receives every frame as
+ * a text message, binary bodies included.
+ */
+class StubBroker implements AutoCloseable
+{
+    private static final String CODEC_HEADER = "wave-codec";
+    private static final String BINARY_CODEC = "binary";
+
+    /**
+     * Received CONNECT and SEND frames
+     */
+    final BlockingQueue<Message<byte[]>> frames = new LinkedBlockingQueue<>();
+
+    private final boolean acceptBinary;
+    private final com.htwsaar.container.Message[] backlog;
+    private final Map<String, String> subscriptions = new ConcurrentHashMap<>();
+    private final AtomicInteger messageIDs = new AtomicInteger();
+    private final ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+    private final Tomcat tomcat = new Tomcat();
+    private final File baseDir;
+    private volatile boolean binary;
+
+    /**
+     * @param acceptBinary true if the binary codec is confirmed when the client offers it
+     * @param backlog      messages delivered after {@code /app/receive}
+     */
+    StubBroker(boolean acceptBinary, com.htwsaar.container.Message... backlog) throws IOException, LifecycleException
+    {
+        this.acceptBinary = acceptBinary;
+        this.backlog = backlog;
+
+        scheduler.setThreadNamePrefix("stub-broker-");
+        scheduler.initialize();
+
+        SockJsHttpRequestHandler sockJs = new SockJsHttpRequestHandler(new DefaultSockJsService(scheduler), new Handler());
+
+        baseDir = Files.createTempDirectory("stub-broker").toFile();
+        tomcat.setBaseDir(baseDir.getAbsolutePath());
+        tomcat.setPort(0);
+
+        StandardContext context = (StandardContext) tomcat.addContext("", baseDir.getAbsolutePath());
+        //the cache is not accessible on Java 9 and later and the stop would fail
+        context.setClearReferencesObjectStreamClassCaches(false);
+        context.addServletContainerInitializer(new WsSci(), null);
+        Tomcat.addServlet(context, "sockjs", new HttpServlet()
+        {
+            @Override
+            public void init()
+            {
+                sockJs.setServletContext(getServletContext());
+                sockJs.start();
+            }
+
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                request.setAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE, request.getPathInfo());
+                try
+                {
+                    sockJs.handleRequest(request, response);
+                } catch (ServletException e)
+                {
+                    throw new IOException(e);
+                }
+            }
+        }).setLoadOnStartup(1);
+        context.addServletMappingDecoded("/chat/*", "sockjs");
+
+        tomcat.getConnector();
+        tomcat.start();
+    }
+
+    /**
+     * @return websocket URL to be used as {@link ServerConnection#HOST}
+     */
+    String url()
+    {
+        return "ws://localhost:" + tomcat.getConnector().getLocalPort() + "/chat";
+    }
+
+    /**
+     * @return next received frame with the command, null if none arrives in time
+     */
+    Message<byte[]> next(StompCommand command) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        Message<byte[]> frame;
+        while ((frame = frames.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) != null)
+        {
+            if (StompHeaderAccessor.wrap(frame).getCommand() == command)
+            {
+                return frame;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws LifecycleException, IOException
+    {
+        scheduler.shutdown();
+        tomcat.stop();
+        tomcat.destroy();
+        try (Stream<Path> paths = Files.walk(baseDir.toPath()))
+        {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private class Handler extends TextWebSocketHandler
+    {
+        private final StompDecoder decoder = new StompDecoder();
+        private final StompEncoder encoder = new StompEncoder();
+
+        @Override
+        protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception
+        {
+            for (Message<byte[]> frame : decoder.decode(ByteBuffer.wrap(message.asBytes())))
+            {
+                StompHeaderAccessor headers = StompHeaderAccessor.wrap(frame);
+                if (headers.getCommand() == null)
+                {
+                    continue;
+                }
+
+                switch (headers.getCommand())
+                {
+                    case CONNECT:
+                    case STOMP:
+                        frames.add(frame);
+                        connected(session, BINARY_CODEC.equals(headers.getFirstNativeHeader(CODEC_HEADER)));
+                        break;
+                    case SUBSCRIBE:
+                        subscriptions.put(headers.getDestination(), headers.getSubscriptionId());
+                        break;
+                    case SEND:
+                        frames.add(frame);
+                        if ("/app/receive".equals(headers.getDestination()))
+                        {
+                            deliver(session, "/user/queue/messages", backlog);
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        private void connected(WebSocketSession session, boolean offered) throws IOException
+        {
+            binary = acceptBinary && offered;
+
+            StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.CONNECTED);
+            headers.setVersion("1.2");
+            headers.setHeartbeat(0, 0);
+            if (binary)
+            {
+                headers.setNativeHeader(CODEC_HEADER, BINARY_CODEC);
+            }
+            send(session, headers, new byte[0]);
+        }
+
+        private void deliver(WebSocketSession session, String destination, Object body) throws IOException
+        {
+            StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.MESSAGE);
+            headers.setDestination(destination);
+            headers.setSubscriptionId(subscriptions.get(destination));
+            headers.setMessageId(String.valueOf(messageIDs.incrementAndGet()));
+            if (binary)
+            {
+                headers.setContentType(BinaryMessageConverter.BINARY);
+                send(session, headers, BinaryCodec.encode(body));
+            }
+            else
+            {
+                headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+                send(session, headers, new ObjectMapper().writeValueAsBytes(body));
+            }
+        }
+
+        private void send(WebSocketSession session, StompHeaderAccessor headers, byte[] payload) throws IOException
+        {
+            Message<byte[]> frame = MessageBuilder.createMessage(payload, headers.getMessageHeaders());
+            session.sendMessage(new TextMessage(encoder.encode(frame)));
+        }
+    }
+}
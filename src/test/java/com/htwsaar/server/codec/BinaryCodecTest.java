@@ -0,0 +1,207 @@
+package com.htwsaar.server.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.htwsaar.container.Group;
+import com.htwsaar.container.Message;
+import com.htwsaar.container.User;
+import org.junit.Test;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BinaryCodecTest
+{
+    private static final Message[] MESSAGES = {
+            new Message(1, 2, 3, "hello", 1_530_000_000_000L, 0),
+            new Message(Integer.MAX_VALUE, Integer.MIN_VALUE, -1, "grüße ✓ 😀", Long.MAX_VALUE, 1),
+            new Message(-5, 0, 300, null, Message.NO_TIME, 0),
+            new Message(0, 7, 8, "", -1_000L, 1)
+    };
+
+    @Test
+    public void messagesSurviveTheRoundTrip()
+    {
+        Message[] decoded = BinaryCodec.decode(BinaryCodec.encode(MESSAGES), Message[].class);
+
+        assertEquals(MESSAGES.length, decoded.length);
+        for (int i = 0; i < MESSAGES.length; i++)
+        {
+            assertMessage(MESSAGES[i], decoded[i]);
+        }
+        assertNull(decoded[2].getMessage());
+        assertNull(decoded[2].getTimestamp());
+    }
+
+    @Test
+    public void nullElementsAreKeptByDecodeAndSkippedByDecodeChunks()
+    {
+        Message[] withNull = {MESSAGES[0], null, MESSAGES[1]};
+        byte[] bytes = BinaryCodec.encode(withNull);
+
+        Message[] decoded = BinaryCodec.decode(bytes, Message[].class);
+        assertNull(decoded[1]);
+
+        List<Message[]> chunks = new ArrayList<>();
+        BinaryCodec.decodeChunks(bytes, Message[].class, 10, chunks::add);
+        assertEquals(1, chunks.size());
+        assertEquals(2, chunks.get(0).length);
+    }
+
+    @Test
+    public void varintsOfAnySizeSurviveTheRoundTrip()
+    {
+        int[] ints = {0, 1, -1, 63, 64, -64, -65, 4095, 4096, 1 << 20, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        assertArrayEquals(ints, BinaryCodec.decode(BinaryCodec.encode(ints), int[].class));
+    }
+
+    @Test
+    public void bytesOutsideOfStringsStayBelow0x80()
+    {
+        int[] ints = {Integer.MIN_VALUE, -1, Integer.MAX_VALUE};
+        for (byte b : BinaryCodec.encode(ints))
+        {
+            assertTrue((b & 0xFF) < 0x80);
+        }
+
+        //a text frame of SockJS turns the bytes into a string and back
+        byte[] bytes = BinaryCodec.encode(MESSAGES);
+        byte[] text = new String(bytes, StandardCharsets.UTF_8).getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals(bytes, text);
+    }
+
+    @Test
+    public void groupMembersSurviveTheRoundTrip()
+    {
+        Group group = new Group(4, "team", 2);
+        group.setMembers(new ArrayList<>(Arrays.asList(new User(2, "alice"), null, new User(3, null))));
+        Group empty = new Group(5, null, 0);
+
+        Group[] decoded = BinaryCodec.decode(BinaryCodec.encode(new Group[]{group, empty}), Group[].class);
+
+        assertEquals(4, decoded[0].getID());
+        assertEquals("team", decoded[0].getName());
+        assertEquals(2, decoded[0].getCreator());
+        List<User> members = decoded[0].getMembers();
+        assertEquals(3, members.size());
+        assertEquals("alice", members.get(0).getName());
+        assertNull(members.get(1));
+        assertEquals(3, members.get(2).getID());
+        assertNull(members.get(2).getName());
+
+        assertNull(decoded[1].getName());
+        assertNull(decoded[1].getMembers());
+    }
+
+    @Test
+    public void truncatedPayloadsAreRejected()
+    {
+        byte[] bytes = BinaryCodec.encode(MESSAGES);
+        for (int length = 0; length < bytes.length; length++)
+        {
+            byte[] truncated = Arrays.copyOf(bytes, length);
+            try
+            {
+                BinaryCodec.decode(truncated, Message[].class);
+                fail("Decoded a payload truncated to " + length + " bytes");
+            } catch (IllegalArgumentException expected)
+            {
+            }
+            try
+            {
+                BinaryCodec.decodeChunks(truncated, Message[].class, 1, chunk -> {
+                });
+                fail("Decoded a payload truncated to " + length + " bytes in chunks");
+            } catch (IllegalArgumentException expected)
+            {
+            }
+        }
+    }
+
+    @Test
+    public void hostileMemberCountIsRejectedBeforeAllocating()
+    {
+        Group group = new Group(4, "team", 2);
+        group.setMembers(new ArrayList<>());
+        byte[] bytes = BinaryCodec.encode(group);
+
+        //the member count is the last byte, an empty list is encoded as 0
+        byte[] hostile = Arrays.copyOf(bytes, bytes.length + 4);
+        hostile[bytes.length - 1] = 0x7E;
+        hostile[bytes.length] = 0x7F;
+        hostile[bytes.length + 1] = 0x7F;
+        hostile[bytes.length + 2] = 0x7F;
+        hostile[bytes.length + 3] = 0x3F;
+
+        try
+        {
+            BinaryCodec.decode(hostile, Group.class);
+            fail("Decoded a member count larger than the payload");
+        } catch (IllegalArgumentException expected)
+        {
+            assertTrue(expected.getMessage().startsWith("Invalid length"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void otherTypesAreRejected()
+    {
+        BinaryCodec.decode(BinaryCodec.encode(MESSAGES), User[].class);
+    }
+
+    @Test
+    public void decodeChunksHandsOnChunksOfTheGivenSize()
+    {
+        Message[] messages = new Message[25];
+        for (int i = 0; i < messages.length; i++)
+        {
+            messages[i] = new Message(i + 1, 2, 3, "m" + i, 1_000L * i, 0);
+        }
+
+        List<Message[]> chunks = new ArrayList<>();
+        BinaryCodec.decodeChunks(BinaryCodec.encode(messages), Message[].class, 10, chunks::add);
+
+        assertEquals(3, chunks.size());
+        assertEquals(10, chunks.get(0).length);
+        assertEquals(10, chunks.get(1).length);
+        assertEquals(5, chunks.get(2).length);
+        assertEquals(25, chunks.get(2)[4].getId());
+    }
+
+    @Test
+    public void jsonAndBinaryDecodeToTheSameMessages() throws Exception
+    {
+        byte[] json = new ObjectMapper().writeValueAsBytes(MESSAGES);
+        byte[] binary = BinaryCodec.encode(MESSAGES);
+
+        List<Message> fromJson = new ArrayList<>();
+        List<Message> fromBinary = new ArrayList<>();
+        MessageStreamDecoder.decode(json, MimeTypeUtils.APPLICATION_JSON, 3, chunk -> fromJson.addAll(Arrays.asList(chunk)));
+        MessageStreamDecoder.decode(binary, BinaryMessageConverter.BINARY, 3, chunk -> fromBinary.addAll(Arrays.asList(chunk)));
+
+        assertEquals(MESSAGES.length, fromJson.size());
+        assertEquals(MESSAGES.length, fromBinary.size());
+        for (int i = 0; i < MESSAGES.length; i++)
+        {
+            assertMessage(fromJson.get(i), fromBinary.get(i));
+        }
+    }
+
+    private static void assertMessage(Message expected, Message actual)
+    {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getOrigin(), actual.getOrigin());
+        assertEquals(expected.getDestination(), actual.getDestination());
+        assertEquals(expected.getMessageType(), actual.getMessageType());
+        assertEquals(expected.getTimeMillis(), actual.getTimeMillis());
+        assertEquals(expected.getMessage(), actual.getMessage());
+    }
+}
@@ -0,0 +1,50 @@
+package com.htwsaar.sql;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Empty databases in resources/ for the tests of the logic classes.
+ */
+public final class TestDatabase
+{
+    private static final String DB_LOCATION = "resources/";
+    private static final String[] SUFFIXES = {"", "-wal", "-shm", "-journal"};
+
+    private TestDatabase()
+    {
+    }
+
+    /**
+     * Connects {@link SQLConnection#INSTANCE} to a new empty database,
+     * an old one with the same name is deleted first.
+     */
+    public static void open(String name) throws IOException
+    {
+        Files.createDirectories(Paths.get(DB_LOCATION));
+        delete(name);
+
+        if (!SQLConnection.INSTANCE.connect(name))
+        {
+            throw new IllegalStateException("Could not open database " + name);
+        }
+    }
+
+    /**
+     * Closes the connection and deletes the database.
+     */
+    public static void close(String name) throws IOException
+    {
+        SQLConnection.INSTANCE.close();
+        delete(name);
+    }
+
+    private static void delete(String name) throws IOException
+    {
+        for (String suffix : SUFFIXES)
+        {
+            Files.deleteIfExists(Paths.get(DB_LOCATION + name + suffix));
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.htwsaar.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class HistogramTest
+{
+    @Test
+    public void percentilesAreBucketBounds()
+    {
+        Histogram histogram = new Histogram("latency", "ms", 1, 10, 100);
+        for (int i = 0; i < 90; i++)
+        {
+            histogram.record(1);
+        }
+        for (int i = 0; i < 9; i++)
+        {
+            histogram.record(50);
+        }
+        histogram.record(10);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(1, histogram.getPercentile(50));
+        assertEquals(1, histogram.getPercentile(90));
+        assertEquals(10, histogram.getPercentile(91));
+        assertEquals(100, histogram.getPercentile(99));
+        assertEquals(50, histogram.getMax());
+        assertEquals((90 + 450 + 10) / 100.0, histogram.getMean(), 1e-9);
+    }
+
+    @Test
+    public void overflowReportsTheMaximum()
+    {
+        Histogram histogram = new Histogram("batch", "messages", 10);
+        histogram.record(5);
+        histogram.record(5_000);
+
+        assertEquals(10, histogram.getPercentile(50));
+        assertEquals(5_000, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void resetStartsOver()
+    {
+        Histogram histogram = new Histogram("batch", "messages", 10);
+        histogram.record(20);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(99));
+        assertEquals(0.0, histogram.getMean(), 0);
+    }
+}
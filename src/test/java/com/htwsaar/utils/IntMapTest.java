@@ -0,0 +1,123 @@
+package com.htwsaar.utils;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class IntMapTest
+{
+    /**
+     * @return keys whose probe sequence starts in the given slot of a table with 16 slots
+     */
+    private static int[] keysWithHome(int slot, int count)
+    {
+        int[] keys = new int[count];
+        int found = 0;
+        for (int key = 0; found < count; key++)
+        {
+            int h = key * 0x9E3779B9;
+            if (((h ^ (h >>> 16)) & 15) == slot)
+            {
+                keys[found++] = key;
+            }
+        }
+        return keys;
+    }
+
+    @Test
+    public void removeShiftsBackAcrossTheTableEnd()
+    {
+        //three keys of the last slot wrap around to slot 0 and 1
+        int[] last = keysWithHome(15, 3);
+        int[] first = keysWithHome(0, 1);
+        IntMap<String> map = new IntMap<>();
+
+        for (int key : last)
+        {
+            map.put(key, "last" + key);
+        }
+        map.put(first[0], "first");
+
+        assertEquals("last" + last[0], map.remove(last[0]));
+        assertNull(map.get(last[0]));
+        assertEquals("last" + last[1], map.get(last[1]));
+        assertEquals("last" + last[2], map.get(last[2]));
+        assertEquals("first", map.get(first[0]));
+
+        assertEquals("last" + last[1], map.remove(last[1]));
+        assertEquals("last" + last[2], map.get(last[2]));
+        assertEquals("first", map.get(first[0]));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    public void entriesSurviveTheResize()
+    {
+        IntMap<Integer> map = new IntMap<>();
+        //16 slots hold 12 entries, the 13th doubles the table
+        for (int key = -6; key < 7; key++)
+        {
+            map.put(key, key * 10);
+        }
+        for (int key = -6; key < 7; key++)
+        {
+            assertEquals(Integer.valueOf(key * 10), map.get(key));
+        }
+        assertEquals(13, map.size());
+        assertEquals(13, map.values().size());
+    }
+
+    @Test
+    public void behavesLikeHashMap()
+    {
+        Random random = new Random(42);
+        IntMap<Integer> map = new IntMap<>();
+        Map<Integer, Integer> expected = new HashMap<>();
+
+        for (int i = 0; i < 100_000; i++)
+        {
+            int key = random.nextInt(2_000) - 1_000;
+            if (random.nextInt(3) == 0)
+            {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+            else
+            {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+
+        for (int key = -1_000; key < 1_000; key++)
+        {
+            assertEquals(expected.get(key), map.get(key));
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+        }
+    }
+
+    @Test
+    public void clearRemovesAllEntries()
+    {
+        IntMap<String> map = new IntMap<>(100);
+        map.put(1, "a");
+        map.put(2, "b");
+        map.clear();
+
+        assertTrue(map.isEmpty());
+        assertFalse(map.containsKey(1));
+        assertTrue(map.values().isEmpty());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void nullValuesAreRejected()
+    {
+        new IntMap<String>().put(1, null);
+    }
+}